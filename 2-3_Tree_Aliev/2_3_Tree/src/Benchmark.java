@@ -1,61 +1,417 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Locale;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
 
+// Набор нагрузочных бенчмарков 2-3 дерева по размерам, распределениям ключей,
+// смесям операций и числу потоков, со сравнением с TreeMap.
+// Методика как у JMH: прогрев, серия измерений, ключи и операции готовятся заранее
+// с фиксированным seed, задержки снимаются выборочно (каждая SAMPLE_EVERY-я операция)
+// в гистограмму, аллокации считаются по потокам через ThreadMXBean.
+//
+// Запуск: java Main [--sizes 1000,100000,1000000] [--distributions UNIFORM,SEQUENTIAL,ZIPFIAN]
+//                   [--mixes READ_ONLY,READ_MOSTLY,BALANCED,WRITE_HEAVY] [--threads 1,4]
+//                   [--ops 1000000] [--warmup 3] [--iterations 5] [--seed 42]
+//                   [--label current] [--out tree_bench.csv]
 public class Benchmark {
-    public static void run() {
-        TwoThreeTree tree = new TwoThreeTree();
-        Random random = new Random();
 
-        // 1. Генерация массива из 10000 случайных чисел
-        int[] numbers = generateNumbers(10000, random);
+    private static final int SAMPLE_EVERY = 16;
 
-        // 2. Тестирование вставки
-        testInsert(tree, numbers);
+    private static final byte SEARCH = 0;
+    private static final byte INSERT = 1;
+    private static final byte DELETE = 2;
 
-        // 3. Тестирование поиска (100 случайных элементов)
-        testSearch(tree, numbers, 100, random);
+    // Общий вид множества ключей для всех реализаций
+    interface KeySet {
+        boolean search(int key);
 
-        // 4. Тестирование удаления (1000 случайных элементов)
-        testDelete(tree, numbers, 1000, random);
+        boolean insert(int key);
 
-        // 5. Вывод результатов
-        printResults(tree);
+        boolean delete(int key);
     }
 
-    private static int[] generateNumbers(int count, Random random) {
-        int[] numbers = new int[count];
-        for (int i = 0; i < count; i++) {
-            numbers[i] = random.nextInt(100000);
+    enum Implementation {
+        TWO_THREE_TREE(false),
+        TREE_MAP(false),
+        CONCURRENT_TWO_THREE_TREE(true),
+        // То, чем дерево защищали раньше: одна блокировка на все операции
+        LOCKED_TWO_THREE_TREE(true);
+
+        final boolean threadSafe;
+
+        Implementation(boolean threadSafe) {
+            this.threadSafe = threadSafe;
         }
-        return numbers;
+
+        // Множество с ключами 0, 2, 4, ..., 2(n-1)
+        KeySet create(int n) {
+            int[] keys = new int[n];
+            for (int i = 0; i < n; i++) keys[i] = 2 * i;
+            switch (this) {
+                case TWO_THREE_TREE: {
+                    TwoThreeTree tree = new TwoThreeTree();
+                    tree.bulkLoad(keys);
+                    return new KeySet() {
+                        public boolean search(int key) { return tree.search(key); }
+                        public boolean insert(int key) {
+                            int before = tree.size();
+                            tree.insert(key);
+                            return tree.size() != before;
+                        }
+                        public boolean delete(int key) { return tree.delete(key); }
+                    };
+                }
+                case TREE_MAP: {
+                    TreeMap<Integer, Boolean> map = new TreeMap<>();
+                    for (int key : keys) map.put(key, Boolean.TRUE);
+                    return new KeySet() {
+                        public boolean search(int key) { return map.containsKey(key); }
+                        public boolean insert(int key) { return map.put(key, Boolean.TRUE) == null; }
+                        public boolean delete(int key) { return map.remove(key) != null; }
+                    };
+                }
+                case CONCURRENT_TWO_THREE_TREE: {
+                    ConcurrentTwoThreeTree tree = new ConcurrentTwoThreeTree();
+                    for (int key : keys) tree.insert(key);
+                    return new KeySet() {
+                        public boolean search(int key) { return tree.search(key); }
+                        public boolean insert(int key) { return tree.insert(key); }
+                        public boolean delete(int key) { return tree.delete(key); }
+                    };
+                }
+                default: {
+                    TwoThreeTree tree = new TwoThreeTree();
+                    tree.bulkLoad(keys);
+                    return new KeySet() {
+                        public synchronized boolean search(int key) { return tree.search(key); }
+                        public synchronized boolean insert(int key) {
+                            int before = tree.size();
+                            tree.insert(key);
+                            return tree.size() != before;
+                        }
+                        public synchronized boolean delete(int key) { return tree.delete(key); }
+                    };
+                }
+            }
+        }
+    }
+
+    // Распределение ключей запросов по пространству [0, 2n)
+    enum Distribution {
+        UNIFORM,
+        SEQUENTIAL,
+        ZIPFIAN
     }
 
-    private static void testInsert(TwoThreeTree tree, int[] numbers) {
-        for (int num : numbers) {
-            tree.insert(num);
+    // Доли поиска и вставки в процентах; остальное - удаление.
+    // Вставки и удаления идут примерно поровну, так что размер дерева почти не меняется.
+    enum Mix {
+        READ_ONLY(100, 0),
+        READ_MOSTLY(95, 3),
+        BALANCED(50, 25),
+        WRITE_HEAVY(10, 45);
+
+        final int searchPercent;
+        final int insertPercent;
+
+        Mix(int searchPercent, int insertPercent) {
+            this.searchPercent = searchPercent;
+            this.insertPercent = insertPercent;
         }
     }
 
-    private static void testSearch(TwoThreeTree tree, int[] numbers, int count, Random random) {
-        for (int i = 0; i < count; i++) {
-            int index = random.nextInt(numbers.length);
-            tree.search(numbers[index]);
+    // Генератор Zipf с theta = 0.99, как в YCSB: O(1) на ключ после O(n) подготовки
+    private static final class Zipfian {
+        private static final double THETA = 0.99;
+        private final long n;
+        private final double zetaN;
+        private final double alpha;
+        private final double eta;
+
+        Zipfian(long n) {
+            this.n = n;
+            double zeta = 0;
+            for (long i = 1; i <= n; i++) {
+                zeta += 1 / Math.pow(i, THETA);
+            }
+            this.zetaN = zeta;
+            double zeta2 = 1 + 1 / Math.pow(2, THETA);
+            this.alpha = 1 / (1 - THETA);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - THETA)) / (1 - zeta2 / zetaN);
+        }
+
+        long next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) return 0;
+            if (uz < 1 + Math.pow(0.5, THETA)) return 1;
+            return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+
+    // Задание одного потока: заранее подготовленные операции и ключи
+    private static final class Workload {
+        final byte[] ops;
+        final int[] keys;
+
+        Workload(int count) {
+            ops = new byte[count];
+            keys = new int[count];
+        }
+    }
+
+    private static final class Result {
+        double opsPerSecond;
+        double stdevOpsPerSecond;
+        double allocBytesPerOp;
+        HistogramTreeMetrics.Snapshot latency;
+    }
+
+    private static final AtomicLong blackhole = new AtomicLong();
+
+    public static void run(String[] args) throws IOException {
+        int[] sizes = {1_000, 100_000, 1_000_000};
+        Distribution[] distributions = Distribution.values();
+        Mix[] mixes = Mix.values();
+        int[] threads = {1, Math.max(2, Runtime.getRuntime().availableProcessors())};
+        int ops = 1_000_000;
+        int warmup = 3;
+        int iterations = 5;
+        long seed = 42;
+        String label = "current";
+        String out = "tree_bench.csv";
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes": sizes = parseInts(args[++i]); break;
+                case "--distributions": distributions = parseEnums(Distribution.class, args[++i]); break;
+                case "--mixes": mixes = parseEnums(Mix.class, args[++i]); break;
+                case "--threads": threads = parseInts(args[++i]); break;
+                case "--ops": ops = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--label": label = args[++i]; break;
+                case "--out": out = args[++i]; break;
+                default: throw new IllegalArgumentException("Неизвестный аргумент: " + args[i]);
+            }
         }
+
+        Path outPath = Paths.get(out);
+        boolean newFile = !Files.exists(outPath) || Files.size(outPath) == 0;
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(outPath,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (newFile) {
+                csv.println("label,timestamp,implementation,distribution,mix,size,threads,"
+                        + "ops_per_s,stdev_ops_per_s,p50_ns,p99_ns,p999_ns,alloc_bytes_per_op");
+            }
+
+            String timestamp = LocalDateTime.now().toString();
+            System.out.println("Реализация                | Распределение | Смесь       |    Размер | Потоки |     Оп/с | p50 нс | p99 нс | p999 нс | Б/оп");
+            System.out.println("-------------------------------------------------------------------------------------------------------------------------------");
+            for (int n : sizes) {
+                for (Distribution distribution : distributions) {
+                    Zipfian zipfian = distribution == Distribution.ZIPFIAN ? new Zipfian(2L * n) : null;
+                    for (Mix mix : mixes) {
+                        for (int threadCount : threads) {
+                            Workload[] workloads = new Workload[threadCount];
+                            for (int t = 0; t < threadCount; t++) {
+                                workloads[t] = workload(n, distribution, zipfian, mix, ops / threadCount,
+                                        t, threadCount, new Random(seed + t));
+                            }
+                            for (Implementation implementation : Implementation.values()) {
+                                if (threadCount > 1 && !implementation.threadSafe) continue;
+                                Result r = measure(implementation.create(n), workloads, warmup, iterations);
+                                HistogramTreeMetrics.Snapshot l = r.latency;
+                                System.out.printf(Locale.ROOT, "%-25s | %-13s | %-11s | %9d | %6d | %8.0f | %6d | %6d | %7d | %.1f%n",
+                                        implementation, distribution, mix, n, threadCount, r.opsPerSecond,
+                                        l.percentileNanos(0.5), l.percentileNanos(0.99), l.percentileNanos(0.999),
+                                        r.allocBytesPerOp);
+                                csv.printf(Locale.ROOT, "%s,%s,%s,%s,%s,%d,%d,%.1f,%.1f,%d,%d,%d,%.2f%n",
+                                        label, timestamp, implementation, distribution, mix, n, threadCount,
+                                        r.opsPerSecond, r.stdevOpsPerSecond, l.percentileNanos(0.5),
+                                        l.percentileNanos(0.99), l.percentileNanos(0.999), r.allocBytesPerOp);
+                                csv.flush();
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        // Не даём JIT выбросить операции как мёртвый код
+        if (blackhole.get() == 42) System.out.println();
     }
 
-    private static void testDelete(TwoThreeTree tree, int[] numbers, int count, Random random) {
+    private static Workload workload(int n, Distribution distribution, Zipfian zipfian, Mix mix, int count,
+                                     int thread, int threads, Random random) {
+        Workload w = new Workload(count);
+        long space = 2L * n;
+        // Последовательные потоки начинают с разных мест пространства ключей
+        long position = space * thread / threads;
         for (int i = 0; i < count; i++) {
-            int index = random.nextInt(numbers.length);
-            tree.delete(numbers[index]);
+            int p = random.nextInt(100);
+            w.ops[i] = p < mix.searchPercent ? SEARCH : p < mix.searchPercent + mix.insertPercent ? INSERT : DELETE;
+            long key;
+            switch (distribution) {
+                case SEQUENTIAL:
+                    key = position++ % space;
+                    break;
+                case ZIPFIAN:
+                    // Горячие ранги разбрасываются по пространству, а не собираются в начале
+                    key = Math.floorMod(zipfian.next(random) * 0x9E3779B97F4A7C15L, space);
+                    break;
+                default:
+                    key = (long) (random.nextDouble() * space);
+            }
+            w.keys[i] = (int) key;
         }
+        return w;
     }
 
-    private static void printResults(TwoThreeTree tree) {
-        System.out.println("=== Результаты тестирования 2-3 дерева ===");
-        System.out.printf("Среднее количество операций при вставке: %.2f\n", tree.getAverageInsertOperations());
-        System.out.printf("Среднее время вставки (нс): %.2f\n", tree.getAverageInsertTimeNanos());
-        System.out.printf("Среднее количество операций при поиске: %.2f\n", tree.getAverageSearchOperations());
-        System.out.printf("Среднее время поиска (нс): %.2f\n", tree.getAverageSearchTimeNanos());
-        System.out.printf("Среднее количество операций при удалении: %.2f\n", tree.getAverageDeleteOperations());
-        System.out.printf("Среднее время удаления (нс): %.2f\n", tree.getAverageDeleteTimeNanos());
+    private static Result measure(KeySet set, Workload[] workloads, int warmup, int iterations) {
+        HistogramTreeMetrics latency = new HistogramTreeMetrics(workloads.length);
+        for (int i = 0; i < warmup; i++) {
+            runIteration(set, workloads, latency, new long[1]);
+        }
+        latency.reset();
+
+        double[] throughput = new double[iterations];
+        long totalOps = 0;
+        long allocBytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long[] alloc = new long[1];
+            long nanos = runIteration(set, workloads, latency, alloc);
+            long ops = 0;
+            for (Workload w : workloads) ops += w.ops.length;
+            throughput[i] = ops * 1e9 / nanos;
+            totalOps += ops;
+            allocBytes += alloc[0];
+        }
+
+        Result r = new Result();
+        double sum = 0;
+        for (double t : throughput) sum += t;
+        r.opsPerSecond = sum / iterations;
+        double sq = 0;
+        for (double t : throughput) sq += (t - r.opsPerSecond) * (t - r.opsPerSecond);
+        r.stdevOpsPerSecond = iterations > 1 ? Math.sqrt(sq / (iterations - 1)) : 0;
+        r.allocBytesPerOp = (double) allocBytes / totalOps;
+        // Для смесей с записью перцентили считаются по всем операциям вместе
+        r.latency = latency.snapshot(TreeMetrics.Operation.SEARCH);
+        r.latency.add(latency.snapshot(TreeMetrics.Operation.INSERT));
+        r.latency.add(latency.snapshot(TreeMetrics.Operation.DELETE));
+        return r;
+    }
+
+    // Все потоки стартуют по барьеру; возвращает время от старта до окончания последнего
+    private static long runIteration(KeySet set, Workload[] workloads, HistogramTreeMetrics latency, long[] alloc) {
+        if (workloads.length == 1) {
+            long allocBefore = allocatedBytes();
+            long start = System.nanoTime();
+            blackhole.addAndGet(runOps(set, workloads[0], latency));
+            long elapsed = System.nanoTime() - start;
+            alloc[0] += allocatedBytes() - allocBefore;
+            return elapsed;
+        }
+
+        CyclicBarrier barrier = new CyclicBarrier(workloads.length + 1);
+        AtomicLong allocated = new AtomicLong();
+        Thread[] threads = new Thread[workloads.length];
+        for (int t = 0; t < threads.length; t++) {
+            Workload w = workloads[t];
+            threads[t] = new Thread(() -> {
+                try {
+                    barrier.await();
+                    long allocBefore = allocatedBytes();
+                    blackhole.addAndGet(runOps(set, w, latency));
+                    allocated.addAndGet(allocatedBytes() - allocBefore);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            threads[t].start();
+        }
+        try {
+            barrier.await();
+            long start = System.nanoTime();
+            for (Thread thread : threads) thread.join();
+            long elapsed = System.nanoTime() - start;
+            alloc[0] += allocated.get();
+            return elapsed;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long runOps(KeySet set, Workload w, HistogramTreeMetrics latency) {
+        long hits = 0;
+        byte[] ops = w.ops;
+        int[] keys = w.keys;
+        for (int i = 0; i < ops.length; i++) {
+            if (i % SAMPLE_EVERY == 0) {
+                long start = System.nanoTime();
+                boolean hit = apply(set, ops[i], keys[i]);
+                latency.record(operation(ops[i]), 0, System.nanoTime() - start);
+                if (hit) hits++;
+            } else if (apply(set, ops[i], keys[i])) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static boolean apply(KeySet set, byte op, int key) {
+        switch (op) {
+            case SEARCH: return set.search(key);
+            case INSERT: return set.insert(key);
+            default: return set.delete(key);
+        }
+    }
+
+    private static TreeMetrics.Operation operation(byte op) {
+        switch (op) {
+            case SEARCH: return TreeMetrics.Operation.SEARCH;
+            case INSERT: return TreeMetrics.Operation.INSERT;
+            default: return TreeMetrics.Operation.DELETE;
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+
+    private static int[] parseInts(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    private static <E extends Enum<E>> E[] parseEnums(Class<E> type, String list) {
+        String[] parts = list.split(",");
+        @SuppressWarnings("unchecked")
+        E[] values = (E[]) java.lang.reflect.Array.newInstance(type, parts.length);
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Enum.valueOf(type, parts[i].trim().toUpperCase(Locale.ROOT));
+        }
+        return values;
     }
-}
\ No newline at end of file
+}
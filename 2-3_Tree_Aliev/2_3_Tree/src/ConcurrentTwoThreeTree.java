@@ -0,0 +1,518 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+// Потокобезопасное 2-3 дерево.
+// Поиск не берёт блокировок: у каждого узла есть версия, читатель копирует поля узла
+// и проверяет, что версия не изменилась (как оптимистичное чтение StampedLock);
+// при конфликте с писателем спуск начинается заново.
+// Писатели тоже спускаются оптимистично, запоминая версии и число ключей на пути,
+// а затем блокируют сверху вниз только узлы, которые может затронуть операция:
+// от ближайшего предка, на котором остановится расщепление или слияние, до листа.
+// Если версия какого-то из них успела измениться, спуск повторяется.
+// Неизменённый узел отпускается с прежней версией, поэтому читатели не перезапускаются
+// из-за чужих блокировок; новую версию получают только изменённые узлы.
+public class ConcurrentTwoThreeTree {
+
+    private static final int MAX_HEIGHT = 32;
+    // Столько раз ждём занятый узел активно, потом уступаем процессор
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(CNode.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Узел той же формы, что Node, но без ссылки на родителя: путь писатель держит сам.
+    // Младший бит version - узел заблокирован писателем, остальные биты - счётчик изменений.
+    private static final class CNode {
+        volatile long version;
+        // Узел удалён из дерева; выставляется под блокировкой, до смены версии
+        boolean obsolete;
+        int k1;
+        int k2;
+        int size;
+        CNode left;
+        CNode middle;
+        CNode right;
+
+        CNode(int key) {
+            this.k1 = key;
+            this.size = 1;
+        }
+
+        boolean isLeaf() {
+            return left == null;
+        }
+
+        boolean contains(int key) {
+            return (size > 0 && k1 == key) || (size == 2 && k2 == key);
+        }
+
+        int key(int i) {
+            return i == 0 ? k1 : k2;
+        }
+
+        void setKey(int i, int key) {
+            if (i == 0) k1 = key;
+            else k2 = key;
+        }
+
+        CNode child(int i) {
+            switch (i) {
+                case 0: return left;
+                case 1: return middle;
+                default: return right;
+            }
+        }
+
+        void setChild(int i, CNode child) {
+            switch (i) {
+                case 0: left = child; break;
+                case 1: middle = child; break;
+                default: right = child;
+            }
+        }
+
+        int childIndex(int key) {
+            if (key < k1) return 0;
+            if (size == 1 || key < k2) return 1;
+            return 2;
+        }
+
+        int indexOf(CNode child) {
+            if (left == child) return 0;
+            if (middle == child) return 1;
+            return 2;
+        }
+    }
+
+    // Корень лежит в anchor.left: смена корня - обычное изменение заблокированного узла
+    private final CNode anchor = new CNode(0);
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentTwoThreeTree() {
+        anchor.size = 0;
+    }
+
+    public int size() {
+        return size.intValue();
+    }
+
+    public boolean search(int key) {
+        while (true) {
+            long anchorVersion = readVersion(anchor);
+            if (anchorVersion >= 0) {
+                CNode root = anchor.left;
+                if (root == null) {
+                    if (validate(anchor, anchorVersion)) return false;
+                } else {
+                    long version = readVersion(root);
+                    if (version >= 0 && validate(anchor, anchorVersion)) {
+                        int result = descend(root, version, key);
+                        if (result >= 0) return result == 1;
+                    }
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // Оптимистичный спуск от node, прочитанного с версией version.
+    // 1 - ключ найден, 0 - ключа нет, -1 - узел изменился, спуск нужно повторить.
+    private static int descend(CNode node, long version, int key) {
+        while (true) {
+            int size = node.size;
+            int k1 = node.k1;
+            int k2 = node.k2;
+            boolean found = size > 0 && (k1 == key || (size == 2 && k2 == key));
+            CNode child = key < k1 ? node.left : size == 1 || key < k2 ? node.middle : node.right;
+            if (!validate(node, version)) return -1;
+            if (found) return 1;
+            if (child == null) return 0;
+
+            // Версия ребёнка читается, пока ссылка на него ещё подтверждена родителем
+            long childVersion = readVersion(child);
+            if (childVersion < 0 || !validate(node, version)) return -1;
+            node = child;
+            version = childVersion;
+        }
+    }
+
+    // Версия для оптимистичного чтения или -1, если узел занят писателем или удалён
+    private static long readVersion(CNode node) {
+        long version = node.version;
+        return (version & 1) != 0 || node.obsolete ? -1 : version;
+    }
+
+    private static boolean validate(CNode node, long version) {
+        VarHandle.acquireFence();
+        return node.version == version;
+    }
+
+    private static void lock(CNode node) {
+        int spins = 0;
+        while (true) {
+            long version = node.version;
+            if ((version & 1) == 0 && VERSION.compareAndSet(node, version, version + 1)) return;
+            if (++spins < SPINS_BEFORE_YIELD) Thread.onSpinWait();
+            else Thread.yield();
+        }
+    }
+
+    // Блокирует узел, только если его версия всё ещё expected. Пока узел занят, ждём:
+    // писатель может отпустить его без изменений, вернув ту же версию.
+    private static boolean tryLock(CNode node, long expected) {
+        int spins = 0;
+        while (true) {
+            long version = node.version;
+            if (version == expected) {
+                if (VERSION.compareAndSet(node, expected, expected + 1)) return true;
+            } else if (version != expected + 1) {
+                return false;
+            }
+            if (++spins < SPINS_BEFORE_YIELD) Thread.onSpinWait();
+            else Thread.yield();
+        }
+    }
+
+    // Узел не менялся: возвращаем прежнюю версию, и оптимистичные чтения остаются верны
+    private static void unlockClean(CNode node) {
+        node.version = node.version - 1;
+    }
+
+    // Узел изменён: новая версия, читатели, видевшие его до изменения, не пройдут проверку
+    private static void unlockChanged(CNode node) {
+        node.version = node.version + 1;
+    }
+
+    // Путь оптимистичного спуска писателя: nodes[0] - anchor, дальше узлы до листа
+    // с версиями и числом ключей на момент чтения. Свой у каждого потока, чтобы
+    // не выделять массивы на каждую операцию.
+    private static final class WriterPath {
+        final CNode[] nodes = new CNode[MAX_HEIGHT + 1];
+        final long[] versions = new long[MAX_HEIGHT + 1];
+        final int[] sizes = new int[MAX_HEIGHT + 1];
+        // Глубина узла с ключом и номер ключа в нём; -1 - ключ не встретился
+        int found;
+        int foundIndex;
+        // Самая большая глубина, заполненная с прошлой очистки
+        int used;
+
+        // Ссылки на узлы не должны держать в памяти удалённые поддеревья
+        void clear() {
+            for (int i = 0; i <= used; i++) {
+                nodes[i] = null;
+            }
+            used = 0;
+        }
+    }
+
+    private static final ThreadLocal<WriterPath> WRITER_PATHS = ThreadLocal.withInitial(WriterPath::new);
+
+    // Оптимистичный спуск писателя от anchor к листу для key без блокировок.
+    // toSuccessor: найдя ключ, спускаться дальше к листу с его преемником.
+    // Возвращает глубину листа (0 - дерево пусто) или -1, если путь изменился.
+    private int descendForWrite(WriterPath path, int key, boolean toSuccessor) {
+        path.found = -1;
+        long version = readVersion(anchor);
+        if (version < 0) return -1;
+        CNode node = anchor.left;
+        path.nodes[0] = anchor;
+        path.versions[0] = version;
+        int depth = 0;
+        while (node != null) {
+            // Версия ребёнка читается, пока ссылка на него ещё подтверждена родителем
+            long nodeVersion = readVersion(node);
+            if (nodeVersion < 0 || !validate(path.nodes[depth], path.versions[depth])) return -1;
+            if (depth == MAX_HEIGHT) return -1;
+            depth++;
+            if (depth > path.used) path.used = depth;
+            path.nodes[depth] = node;
+            path.versions[depth] = nodeVersion;
+
+            int size = node.size;
+            int k1 = node.k1;
+            int k2 = node.k2;
+            CNode child;
+            if (path.found < 0 && size > 0 && (k1 == key || (size == 2 && k2 == key))) {
+                path.found = depth;
+                path.foundIndex = k1 == key ? 0 : 1;
+                child = toSuccessor ? (k1 == key ? node.middle : node.right) : null;
+            } else if (path.found >= 0) {
+                child = node.left;
+            } else {
+                child = key < k1 ? node.left : size == 1 || key < k2 ? node.middle : node.right;
+            }
+            path.sizes[depth] = size;
+            if (!validate(node, nodeVersion)) return -1;
+            if (path.found >= 0 && !toSuccessor) return depth;
+            node = child;
+        }
+        return depth;
+    }
+
+    // Блокирует path[from, to] сверху вниз, если их версии не изменились со спуска;
+    // иначе отпускает уже взятые и возвращает false
+    private static boolean lockPath(WriterPath path, int from, int to) {
+        for (int i = from; i <= to; i++) {
+            if (!tryLock(path.nodes[i], path.versions[i])) {
+                for (int j = from; j < i; j++) {
+                    unlockClean(path.nodes[j]);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Возвращает false, если ключ уже был в дереве
+    public boolean insert(int key) {
+        WriterPath path = WRITER_PATHS.get();
+        try {
+            while (true) {
+                int depth = descendForWrite(path, key, false);
+                if (depth < 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (path.found >= 0) return false;
+
+                // Расщепление поднимется до ближайшего узла с одним ключом (или до anchor):
+                // блокируются только он и всё ниже. Обычно это сам лист.
+                int from = depth;
+                while (from > 0 && path.sizes[from] == 2) {
+                    from--;
+                }
+                if (!lockPath(path, from, depth)) continue;
+
+                if (depth == 0) {
+                    anchor.left = new CNode(key);
+                } else {
+                    insertLocked(path.nodes, depth, key);
+                }
+                // Расщепления дошли до from, так что изменены все заблокированные узлы
+                for (int i = from; i <= depth; i++) {
+                    unlockChanged(path.nodes[i]);
+                }
+                size.increment();
+                return true;
+            }
+        } finally {
+            path.clear();
+        }
+    }
+
+    // Вставка в лист path[depth] с расщеплениями вверх по заблокированному пути
+    private void insertLocked(CNode[] path, int depth, int key) {
+        CNode node = path[depth];
+        CNode rightChild = null;
+        while (true) {
+            if (node.size == 1) {
+                if (key < node.k1) {
+                    node.k2 = node.k1;
+                    node.k1 = key;
+                    node.right = node.middle;
+                    node.middle = rightChild;
+                } else {
+                    node.k2 = key;
+                    node.right = rightChild;
+                }
+                node.size = 2;
+                return;
+            }
+
+            // Новый узел sibling недоступен читателям, пока его не опубликует родитель
+            int promoted;
+            CNode sibling;
+            if (key < node.k1) {
+                promoted = node.k1;
+                sibling = new CNode(node.k2);
+                sibling.left = node.middle;
+                sibling.middle = node.right;
+                node.k1 = key;
+                node.middle = rightChild;
+            } else if (key < node.k2) {
+                promoted = key;
+                sibling = new CNode(node.k2);
+                sibling.left = rightChild;
+                sibling.middle = node.right;
+            } else {
+                promoted = node.k2;
+                sibling = new CNode(key);
+                sibling.left = node.right;
+                sibling.middle = rightChild;
+            }
+            node.k2 = 0;
+            node.right = null;
+            node.size = 1;
+
+            CNode parent = path[--depth];
+            if (parent == anchor) {
+                CNode root = new CNode(promoted);
+                root.left = node;
+                root.middle = sibling;
+                anchor.left = root;
+                return;
+            }
+            node = parent;
+            key = promoted;
+            rightChild = sibling;
+        }
+    }
+
+    public boolean delete(int key) {
+        WriterPath path = WRITER_PATHS.get();
+        try {
+            while (true) {
+                int depth = descendForWrite(path, key, true);
+                if (depth < 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (path.found < 0) return false;
+
+                // Слияния поднимутся до ближайшего узла с двумя ключами (или до anchor).
+                // Узел с ключом блокируется отдельно, если он выше: в него встанет преемник.
+                int keyDepth = path.found;
+                int from = depth;
+                while (from > 0 && path.sizes[from] == 1) {
+                    from--;
+                }
+                CNode keyNode = path.nodes[keyDepth];
+                boolean keyAbove = keyDepth < from;
+                if (keyAbove && !tryLock(keyNode, path.versions[keyDepth])) continue;
+                if (!lockPath(path, from, depth)) {
+                    if (keyAbove) unlockClean(keyNode);
+                    continue;
+                }
+
+                // Лист не менялся со спуска, значит его первый ключ - всё ещё преемник key
+                CNode[] nodes = path.nodes;
+                CNode leaf = nodes[depth];
+                int keyIndex = path.foundIndex;
+                if (leaf != keyNode) {
+                    keyNode.setKey(keyIndex, leaf.k1);
+                    keyIndex = 0;
+                }
+                if (keyIndex == 0) {
+                    leaf.k1 = leaf.k2;
+                }
+                leaf.k2 = 0;
+                leaf.size--;
+
+                // Изменены nodes[top, depth] и keyNode; узлы между from и top - нет
+                int top = depth;
+                for (int d = depth; nodes[d].size == 0; d--) {
+                    top = d - 1;
+                    if (!rebalance(nodes[d - 1], nodes[d])) break;
+                }
+
+                for (int i = from; i <= depth; i++) {
+                    if (i >= top || i == keyDepth) unlockChanged(nodes[i]);
+                    else unlockClean(nodes[i]);
+                }
+                if (keyAbove) unlockChanged(keyNode);
+                size.decrement();
+                return true;
+            }
+        } finally {
+            path.clear();
+        }
+    }
+
+    // Опустевший node занимает ключ у соседа или сливается с ним.
+    // Возвращает true, если опустел родитель и выравнивание нужно продолжить выше.
+    private boolean rebalance(CNode parent, CNode node) {
+        if (parent == anchor) {
+            anchor.left = node.left;
+            node.obsolete = true;
+            return false;
+        }
+
+        int nodeIndex = parent.indexOf(node);
+        CNode leftSibling = nodeIndex > 0 ? parent.child(nodeIndex - 1) : null;
+        CNode rightSibling = nodeIndex < parent.size ? parent.child(nodeIndex + 1) : null;
+
+        // Соседи блокируются под блокировкой родителя, поэтому порядок захвата всегда сверху вниз
+        if (leftSibling != null) {
+            lock(leftSibling);
+            if (leftSibling.size == 2) {
+                borrowLeft(parent, nodeIndex, leftSibling, node);
+                unlockChanged(leftSibling);
+                return false;
+            }
+        }
+        if (rightSibling != null) {
+            lock(rightSibling);
+            if (rightSibling.size == 2) {
+                borrowRight(parent, nodeIndex, node, rightSibling);
+                unlockChanged(rightSibling);
+                if (leftSibling != null) unlockClean(leftSibling);
+                return false;
+            }
+        }
+
+        if (leftSibling != null) {
+            leftSibling.k2 = parent.key(nodeIndex - 1);
+            leftSibling.right = node.left;
+            leftSibling.size = 2;
+            removeFromParent(parent, nodeIndex - 1, nodeIndex);
+            unlockChanged(leftSibling);
+            if (rightSibling != null) unlockClean(rightSibling);
+        } else {
+            rightSibling.k2 = rightSibling.k1;
+            rightSibling.k1 = parent.k1;
+            rightSibling.right = rightSibling.middle;
+            rightSibling.middle = rightSibling.left;
+            rightSibling.left = node.left;
+            rightSibling.size = 2;
+            removeFromParent(parent, 0, 0);
+            unlockChanged(rightSibling);
+        }
+        node.left = null;
+        node.obsolete = true;
+        return parent.size == 0;
+    }
+
+    private static void borrowLeft(CNode parent, int nodeIndex, CNode leftSibling, CNode node) {
+        node.k1 = parent.key(nodeIndex - 1);
+        node.size = 1;
+        parent.setKey(nodeIndex - 1, leftSibling.k2);
+        node.middle = node.left;
+        node.left = leftSibling.right;
+        leftSibling.right = null;
+        leftSibling.k2 = 0;
+        leftSibling.size = 1;
+    }
+
+    private static void borrowRight(CNode parent, int nodeIndex, CNode node, CNode rightSibling) {
+        node.k1 = parent.key(nodeIndex);
+        node.size = 1;
+        parent.setKey(nodeIndex, rightSibling.k1);
+        node.middle = rightSibling.left;
+        rightSibling.left = rightSibling.middle;
+        rightSibling.middle = rightSibling.right;
+        rightSibling.right = null;
+        rightSibling.k1 = rightSibling.k2;
+        rightSibling.k2 = 0;
+        rightSibling.size = 1;
+    }
+
+    private static void removeFromParent(CNode parent, int keyIndex, int childIndex) {
+        for (int i = keyIndex; i < parent.size - 1; i++) {
+            parent.setKey(i, parent.key(i + 1));
+        }
+        for (int i = childIndex; i < parent.size; i++) {
+            parent.setChild(i, parent.child(i + 1));
+        }
+        parent.setChild(parent.size, null);
+        parent.setKey(parent.size - 1, 0);
+        parent.size--;
+    }
+}
@@ -0,0 +1,160 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Метрики фиксированного размера: на каждую операцию счётчики и логарифмически-линейная
+// гистограмма задержек. Чтобы потоки не спорили за одни ячейки, всё разбито на полосы
+// по потокам; snapshot() складывает полосы. Память не растёт с числом операций.
+public class HistogramTreeMetrics implements TreeMetrics {
+
+    // Внутри каждой степени двойки 2^SUB_BITS линейных корзин: погрешность перцентиля до 1/16
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Задержки от 2^MAX_EXPONENT нс (около 18 минут) попадают в последнюю корзину
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    // Раскладка полосы: число операций, сумма узлов, сумма времени, корзины
+    private static final int COUNT = 0;
+    private static final int NODES = 1;
+    private static final int NANOS = 2;
+    private static final int FIRST_BUCKET = 3;
+    // Полоса выровнена на 128 байт, чтобы соседние полосы не делили строку кэша
+    private static final int STRIPE_LENGTH = (FIRST_BUCKET + BUCKETS + 15) & ~15;
+
+    private final int stripeMask;
+    private final AtomicLongArray[] cells = new AtomicLongArray[Operation.values().length];
+
+    public HistogramTreeMetrics() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public HistogramTreeMetrics(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Число полос должно быть положительным");
+        }
+        int n = Integer.highestOneBit(Math.min(stripes, 64) * 2 - 1);
+        this.stripeMask = n - 1;
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new AtomicLongArray(n * STRIPE_LENGTH);
+        }
+    }
+
+    @Override
+    public void record(Operation operation, int nodes, long nanos) {
+        AtomicLongArray c = cells[operation.ordinal()];
+        int base = stripe() * STRIPE_LENGTH;
+        c.getAndIncrement(base + COUNT);
+        c.getAndAdd(base + NODES, nodes);
+        c.getAndAdd(base + NANOS, nanos);
+        c.getAndIncrement(base + FIRST_BUCKET + bucket(nanos));
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & stripeMask;
+    }
+
+    // Значения меньше SUB_BUCKETS - каждое в своей корзине,
+    // дальше на каждую степень двойки SUB_BUCKETS равных корзин
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) Math.max(0, nanos);
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent >= MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Наибольшее значение, попадающее в корзину
+    static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    public void reset() {
+        for (AtomicLongArray c : cells) {
+            for (int i = 0; i < c.length(); i++) {
+                c.set(i, 0);
+            }
+        }
+    }
+
+    // Сводка по операции; под одновременной записью - приблизительная
+    public Snapshot snapshot(Operation operation) {
+        AtomicLongArray c = cells[operation.ordinal()];
+        Snapshot s = new Snapshot(operation);
+        for (int base = 0; base < c.length(); base += STRIPE_LENGTH) {
+            s.count += c.get(base + COUNT);
+            s.nodes += c.get(base + NODES);
+            s.nanos += c.get(base + NANOS);
+            for (int b = 0; b < BUCKETS; b++) {
+                s.buckets[b] += c.get(base + FIRST_BUCKET + b);
+            }
+        }
+        return s;
+    }
+
+    public static final class Snapshot {
+        private final Operation operation;
+        private final long[] buckets = new long[BUCKETS];
+        private long count;
+        private long nodes;
+        private long nanos;
+
+        Snapshot(Operation operation) {
+            this.operation = operation;
+        }
+
+        // Добавляет к сводке другую, например другой операции
+        void add(Snapshot other) {
+            count += other.count;
+            nodes += other.nodes;
+            nanos += other.nanos;
+            for (int b = 0; b < BUCKETS; b++) {
+                buckets[b] += other.buckets[b];
+            }
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getAverageNodes() {
+            return count == 0 ? 0 : (double) nodes / count;
+        }
+
+        public double getAverageNanos() {
+            return count == 0 ? 0 : (double) nanos / count;
+        }
+
+        // Задержка, которую не превышает доля q операций (верхняя граница корзины)
+        public long percentileNanos(double q) {
+            if (q < 0 || q > 1) {
+                throw new IllegalArgumentException("Доля вне [0, 1]: " + q);
+            }
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += buckets[b];
+                if (seen >= rank) return bucketUpperBound(b);
+            }
+            return bucketUpperBound(BUCKETS - 1);
+        }
+
+        @Override
+        public String toString() {
+            return operation + "{count=" + count
+                    + ", avgNodes=" + String.format("%.2f", getAverageNodes())
+                    + ", avgNs=" + String.format("%.1f", getAverageNanos())
+                    + ", p50=" + percentileNanos(0.5)
+                    + ", p99=" + percentileNanos(0.99)
+                    + ", p999=" + percentileNanos(0.999)
+                    + '}';
+        }
+    }
+}
@@ -0,0 +1,383 @@
+import java.util.ConcurrentModificationException;
+import java.util.function.IntFunction;
+
+// Отображение int -> V на 2-3 дереве. Ключи хранятся без упаковки, значения лежат
+// в узле рядом со своими ключами, так что get/put/remove/computeIfAbsent обходятся
+// одним спуском. Не потокобезопасно.
+public class IntTwoThreeMap<V> {
+
+    // Высота 2-3 дерева с различными int ключами не больше 32
+    private static final int MAX_HEIGHT = 32;
+
+    private static final class Entry<V> {
+        int k1;
+        int k2;
+        V v1;
+        V v2;
+        // Число ключей: 1 или 2; 0 бывает только временно, пока удаление выравнивает дерево
+        int size;
+        Entry<V> left;
+        Entry<V> middle;
+        Entry<V> right;
+
+        Entry(int key, V value) {
+            this.k1 = key;
+            this.v1 = value;
+            this.size = 1;
+        }
+
+        boolean isLeaf() {
+            return left == null;
+        }
+
+        int key(int i) {
+            return i == 0 ? k1 : k2;
+        }
+
+        V value(int i) {
+            return i == 0 ? v1 : v2;
+        }
+
+        void set(int i, int key, V value) {
+            if (i == 0) {
+                k1 = key;
+                v1 = value;
+            } else {
+                k2 = key;
+                v2 = value;
+            }
+        }
+
+        void setValue(int i, V value) {
+            if (i == 0) v1 = value;
+            else v2 = value;
+        }
+
+        Entry<V> child(int i) {
+            switch (i) {
+                case 0: return left;
+                case 1: return middle;
+                default: return right;
+            }
+        }
+
+        void setChild(int i, Entry<V> child) {
+            switch (i) {
+                case 0: left = child; break;
+                case 1: middle = child; break;
+                default: right = child;
+            }
+        }
+
+        int childIndex(int key) {
+            if (key < k1) return 0;
+            if (size == 1 || key < k2) return 1;
+            return 2;
+        }
+    }
+
+    private Entry<V> root;
+    private int size;
+    // Число структурных изменений: по нему computeIfAbsent замечает вмешательство функции
+    private int modCount;
+
+    // Путь последнего спуска: предки в path[0, depth), номера детей в pathIndex;
+    // при промахе path[depth] - лист, куда встанет ключ
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Entry<V>[] path = (Entry<V>[]) new Entry[MAX_HEIGHT + 1];
+    private final int[] pathIndex = new int[MAX_HEIGHT];
+    private int depth;
+    // Номер найденного ключа в узле, который вернул descend
+    private int foundIndex;
+    // Число вызовов descend: по нему computeIfAbsent видит, что путь перезаписан
+    private int descents;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        for (Entry<V> node = root; node != null; node = node.child(node.childIndex(key))) {
+            if (key == node.k1 || (node.size == 2 && key == node.k2)) return true;
+        }
+        return false;
+    }
+
+    public V get(int key) {
+        for (Entry<V> node = root; node != null; node = node.child(node.childIndex(key))) {
+            if (key == node.k1) return node.v1;
+            if (node.size == 2 && key == node.k2) return node.v2;
+        }
+        return null;
+    }
+
+    // Возвращает прежнее значение или null
+    public V put(int key, V value) {
+        Entry<V> node = descend(key);
+        if (node != null) {
+            V old = node.value(foundIndex);
+            node.setValue(foundIndex, value);
+            return old;
+        }
+        insertAtLeaf(key, value);
+        return null;
+    }
+
+    // Значение для key; при отсутствии (или null) вычисляется и сохраняется, если не null
+    public V computeIfAbsent(int key, IntFunction<? extends V> mapping) {
+        Entry<V> node = descend(key);
+        if (node != null) {
+            // foundIndex - общее поле, и спуск внутри функции его перезапишет
+            int index = foundIndex;
+            V value = node.value(index);
+            if (value == null) {
+                int expectedModCount = modCount;
+                value = mapping.apply(key);
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                node.setValue(index, value);
+            }
+            return value;
+        }
+        int expectedModCount = modCount;
+        int expectedDescents = descents;
+        V value = mapping.apply(key);
+        if (value != null) {
+            // Вставка идёт по сохранённому пути, поэтому функции нельзя менять отображение
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // Функция могла читать отображение и затереть путь - тогда спускаемся заново
+            if (descents != expectedDescents) descend(key);
+            insertAtLeaf(key, value);
+        }
+        return value;
+    }
+
+    // Возвращает удалённое значение или null
+    public V remove(int key) {
+        Entry<V> node = descend(key);
+        if (node == null) return null;
+        int keyIndex = foundIndex;
+        V old = node.value(keyIndex);
+
+        // Ключ внутреннего узла заменяем преемником - самым левым ключом правого поддерева
+        Entry<V> leaf = node;
+        if (!node.isLeaf()) {
+            path[depth] = node;
+            pathIndex[depth++] = keyIndex + 1;
+            leaf = node.child(keyIndex + 1);
+            while (!leaf.isLeaf()) {
+                path[depth] = leaf;
+                pathIndex[depth++] = 0;
+                leaf = leaf.left;
+            }
+            node.set(keyIndex, leaf.k1, leaf.v1);
+            keyIndex = 0;
+        }
+
+        if (keyIndex == 0) {
+            leaf.k1 = leaf.k2;
+            leaf.v1 = leaf.v2;
+        }
+        leaf.k2 = 0;
+        leaf.v2 = null;
+        leaf.size--;
+        size--;
+        modCount++;
+
+        if (leaf.size == 0) {
+            rebalance(leaf);
+        }
+        return old;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    // Спуск к key с записью пути; узел с ключом (его номер - в foundIndex) или null
+    private Entry<V> descend(int key) {
+        descents++;
+        depth = 0;
+        Entry<V> node = root;
+        path[0] = null;
+        while (node != null) {
+            if (key == node.k1) {
+                foundIndex = 0;
+                return node;
+            }
+            if (node.size == 2 && key == node.k2) {
+                foundIndex = 1;
+                return node;
+            }
+            if (node.isLeaf()) {
+                path[depth] = node;
+                return null;
+            }
+            int i = node.childIndex(key);
+            path[depth] = node;
+            pathIndex[depth++] = i;
+            node = node.child(i);
+        }
+        return null;
+    }
+
+    // Вставка в лист path[depth] после промаха descend; расщепления идут вверх по пути
+    private void insertAtLeaf(int key, V value) {
+        size++;
+        modCount++;
+        Entry<V> node = path[depth];
+        if (node == null) {
+            root = new Entry<>(key, value);
+            return;
+        }
+        Entry<V> rightChild = null;
+        while (true) {
+            if (node.size == 1) {
+                if (key < node.k1) {
+                    node.k2 = node.k1;
+                    node.v2 = node.v1;
+                    node.k1 = key;
+                    node.v1 = value;
+                    node.right = node.middle;
+                    node.middle = rightChild;
+                } else {
+                    node.k2 = key;
+                    node.v2 = value;
+                    node.right = rightChild;
+                }
+                node.size = 2;
+                return;
+            }
+
+            // Три ключа: node оставляет меньший, sibling получает больший
+            int promotedKey;
+            V promotedValue;
+            Entry<V> sibling;
+            if (key < node.k1) {
+                promotedKey = node.k1;
+                promotedValue = node.v1;
+                sibling = new Entry<>(node.k2, node.v2);
+                sibling.left = node.middle;
+                sibling.middle = node.right;
+                node.k1 = key;
+                node.v1 = value;
+                node.middle = rightChild;
+            } else if (key < node.k2) {
+                promotedKey = key;
+                promotedValue = value;
+                sibling = new Entry<>(node.k2, node.v2);
+                sibling.left = rightChild;
+                sibling.middle = node.right;
+            } else {
+                promotedKey = node.k2;
+                promotedValue = node.v2;
+                sibling = new Entry<>(key, value);
+                sibling.left = node.right;
+                sibling.middle = rightChild;
+            }
+            node.k2 = 0;
+            node.v2 = null;
+            node.right = null;
+            node.size = 1;
+
+            if (depth == 0) {
+                root = new Entry<>(promotedKey, promotedValue);
+                root.left = node;
+                root.middle = sibling;
+                return;
+            }
+            node = path[--depth];
+            key = promotedKey;
+            value = promotedValue;
+            rightChild = sibling;
+        }
+    }
+
+    // node остался без ключей; path[0, depth) - его предки.
+    // Занимаем ключ у соседа, а если нельзя - сливаемся с ним и поднимаемся к родителю.
+    private void rebalance(Entry<V> node) {
+        while (true) {
+            if (depth == 0) {
+                root = node.left;
+                return;
+            }
+
+            Entry<V> parent = path[--depth];
+            int nodeIndex = pathIndex[depth];
+            Entry<V> leftSibling = nodeIndex > 0 ? parent.child(nodeIndex - 1) : null;
+            Entry<V> rightSibling = nodeIndex < parent.size ? parent.child(nodeIndex + 1) : null;
+
+            if (leftSibling != null && leftSibling.size == 2) {
+                node.set(0, parent.key(nodeIndex - 1), parent.value(nodeIndex - 1));
+                node.size = 1;
+                parent.set(nodeIndex - 1, leftSibling.k2, leftSibling.v2);
+                node.middle = node.left;
+                node.left = leftSibling.right;
+                leftSibling.right = null;
+                leftSibling.k2 = 0;
+                leftSibling.v2 = null;
+                leftSibling.size = 1;
+                return;
+            }
+            if (rightSibling != null && rightSibling.size == 2) {
+                node.set(0, parent.key(nodeIndex), parent.value(nodeIndex));
+                node.size = 1;
+                parent.set(nodeIndex, rightSibling.k1, rightSibling.v1);
+                node.middle = rightSibling.left;
+                rightSibling.left = rightSibling.middle;
+                rightSibling.middle = rightSibling.right;
+                rightSibling.right = null;
+                rightSibling.k1 = rightSibling.k2;
+                rightSibling.v1 = rightSibling.v2;
+                rightSibling.k2 = 0;
+                rightSibling.v2 = null;
+                rightSibling.size = 1;
+                return;
+            }
+
+            // Слияние (предпочитаем левого брата)
+            if (leftSibling != null) {
+                leftSibling.set(1, parent.key(nodeIndex - 1), parent.value(nodeIndex - 1));
+                leftSibling.right = node.left;
+                leftSibling.size = 2;
+                removeFromParent(parent, nodeIndex - 1, nodeIndex);
+            } else {
+                rightSibling.k2 = rightSibling.k1;
+                rightSibling.v2 = rightSibling.v1;
+                rightSibling.k1 = parent.k1;
+                rightSibling.v1 = parent.v1;
+                rightSibling.right = rightSibling.middle;
+                rightSibling.middle = rightSibling.left;
+                rightSibling.left = node.left;
+                rightSibling.size = 2;
+                removeFromParent(parent, 0, 0);
+            }
+            node.left = null;
+
+            if (parent.size > 0) return;
+            node = parent;
+        }
+    }
+
+    // Убирает из родителя ключ keyIndex и ребёнка childIndex со сдвигом остальных влево
+    private static <V> void removeFromParent(Entry<V> parent, int keyIndex, int childIndex) {
+        for (int i = keyIndex; i < parent.size - 1; i++) {
+            parent.set(i, parent.key(i + 1), parent.value(i + 1));
+        }
+        for (int i = childIndex; i < parent.size; i++) {
+            parent.setChild(i, parent.child(i + 1));
+        }
+        parent.setChild(parent.size, null);
+        parent.set(parent.size - 1, 0, null);
+        parent.size--;
+    }
+}
@@ -1,5 +1,7 @@
+import java.io.IOException;
+
 public class Main {
-    public static void main(String[] args) {
-        Benchmark.run();
+    public static void main(String[] args) throws IOException {
+        Benchmark.run(args);
     }
 }
\ No newline at end of file
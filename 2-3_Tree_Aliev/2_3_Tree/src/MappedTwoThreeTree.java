@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+// 2-3 дерево только для чтения поверх снимка, отображённого в память.
+// Поиск идёт прямо по MappedByteBuffer без разбора файла, поэтому открытие
+// почти мгновенно, а несколько процессов делят одни страницы кэша ОС.
+//
+// Формат снимка (little-endian):
+//   int magic "T23S", int версия, int число узлов, int число ключей,
+//   затем узлы в порядке обхода по уровням, по NODE_BYTES на узел:
+//   int k1, int k2, int число ключей, int номер первого ребёнка (-1 у листа).
+// При обходе по уровням дети узла идут подряд, поэтому хватает номера первого.
+//
+// Один MappedByteBuffer не больше 2 ГБ, поэтому узлы отображаются окнами
+// по WINDOW_NODES; предел снимка - число узлов в int, его не превысит ни одно
+// TwoThreeTree (узлов не больше ключей).
+public final class MappedTwoThreeTree {
+
+    static final int MAGIC = 0x53333254; // "T23S"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int NODE_BYTES = 16;
+    private static final int WRITE_BUFFER_NODES = 1 << 14;
+    // Окно отображения - 2^26 узлов, 1 ГБ
+    private static final int WINDOW_SHIFT = 26;
+    private static final int WINDOW_NODES = 1 << WINDOW_SHIFT;
+
+    private final MappedByteBuffer[] windows;
+    private final int nodeCount;
+    private final int size;
+
+    private MappedTwoThreeTree(MappedByteBuffer[] windows, int nodeCount, int size) {
+        this.windows = windows;
+        this.nodeCount = nodeCount;
+        this.size = size;
+    }
+
+    public static MappedTwoThreeTree open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException("Неверный размер снимка: " + fileSize);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) throw new IOException("Снимок обрезан");
+            }
+            if (header.getInt(0) != MAGIC) throw new IOException("Не снимок 2-3 дерева");
+            if (header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка: " + header.getInt(4));
+            }
+            int nodeCount = header.getInt(8);
+            int size = header.getInt(12);
+            if (nodeCount < 0 || (long) HEADER_BYTES + (long) nodeCount * NODE_BYTES != fileSize) {
+                throw new IOException("Снимок повреждён: " + nodeCount + " узлов в файле " + fileSize + " байт");
+            }
+
+            // Отображения остаются действительными и после закрытия канала
+            MappedByteBuffer[] windows = new MappedByteBuffer[(int) ((nodeCount + (long) WINDOW_NODES - 1) >> WINDOW_SHIFT)];
+            for (int w = 0; w < windows.length; w++) {
+                long first = (long) w << WINDOW_SHIFT;
+                long nodes = Math.min(WINDOW_NODES, nodeCount - first);
+                windows[w] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + first * NODE_BYTES, nodes * NODE_BYTES);
+                windows[w].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new MappedTwoThreeTree(windows, nodeCount, size);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean search(int key) {
+        if (nodeCount == 0) return false;
+        int node = 0;
+        while (true) {
+            MappedByteBuffer buffer = windows[node >>> WINDOW_SHIFT];
+            int base = (node & (WINDOW_NODES - 1)) * NODE_BYTES;
+            int k1 = buffer.getInt(base);
+            if (key == k1) return true;
+            int keys = buffer.getInt(base + 8);
+            int k2 = buffer.getInt(base + 4);
+            if (keys == 2 && key == k2) return true;
+            int firstChild = buffer.getInt(base + 12);
+            if (firstChild < 0) return false;
+            node = firstChild + (key < k1 ? 0 : keys == 1 || key < k2 ? 1 : 2);
+        }
+    }
+
+    // Пишет снимок дерева с корнем root и size ключами.
+    // При ошибке недописанный файл удаляется: без заголовка он всё равно не откроется.
+    static void write(Node root, int size, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try (channel) {
+            writeNodes(root, size, channel);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private static void writeNodes(Node root, int size, FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_NODES * NODE_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        // Заголовок пишется последним, когда известно число узлов
+        channel.position(HEADER_BYTES);
+
+        int nodeCount = 0;
+        if (root != null) {
+            ArrayDeque<Node> queue = new ArrayDeque<>();
+            queue.add(root);
+            // Номер, который получит следующий поставленный в очередь узел
+            int next = 1;
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                int firstChild = -1;
+                if (!node.isLeaf()) {
+                    firstChild = next;
+                    for (int i = 0; i <= node.size; i++) {
+                        queue.add(node.child(i));
+                    }
+                    next += node.size + 1;
+                }
+                if (buffer.remaining() < NODE_BYTES) flush(channel, buffer);
+                buffer.putInt(node.k1).putInt(node.size == 2 ? node.k2 : 0)
+                        .putInt(node.size).putInt(firstChild);
+                nodeCount++;
+            }
+        }
+        flush(channel, buffer);
+
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(nodeCount).putInt(size).flip();
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -1,16 +1,68 @@
-import java.util.ArrayList;
-import java.util.List;
-
+// Узел 2-3 дерева фиксированной формы: один или два ключа в примитивных полях
+// и прямые ссылки на детей. У листа все ссылки на детей равны null.
 public class Node {
-    public List<Integer> keys;
-    public List<Node> children;
-    public Node parent;
-    public boolean isLeaf;
-
-    public Node() {
-        this.keys = new ArrayList<>();
-        this.children = new ArrayList<>();
-        this.parent = null;
-        this.isLeaf = true;
-    }
-}
\ No newline at end of file
+    public int k1;
+    public int k2;
+    // Число ключей: 1 или 2; 0 бывает только временно, пока удаление выравнивает дерево
+    public int size;
+    // Число ключей в поддереве; ведётся, только если дерево хранит порядковую статистику
+    public int count;
+    public Node left;
+    public Node middle;
+    public Node right;
+
+    public Node(int key) {
+        this.k1 = key;
+        this.size = 1;
+        this.count = 1;
+    }
+
+    public boolean isLeaf() {
+        return left == null;
+    }
+
+    public boolean contains(int key) {
+        return (size > 0 && k1 == key) || (size == 2 && k2 == key);
+    }
+
+    int key(int i) {
+        return i == 0 ? k1 : k2;
+    }
+
+    void setKey(int i, int key) {
+        if (i == 0) k1 = key;
+        else k2 = key;
+    }
+
+    Node child(int i) {
+        switch (i) {
+            case 0: return left;
+            case 1: return middle;
+            default: return right;
+        }
+    }
+
+    void setChild(int i, Node child) {
+        switch (i) {
+            case 0: left = child; break;
+            case 1: middle = child; break;
+            default: right = child;
+        }
+    }
+
+    // Номер поддерева, в котором может лежать key
+    int childIndex(int key) {
+        if (key < k1) return 0;
+        if (size == 1 || key < k2) return 1;
+        return 2;
+    }
+
+    // Пересчитывает count по детям, у которых он уже верен
+    void recount() {
+        count = size + count(left) + count(middle) + count(right);
+    }
+
+    static int count(Node node) {
+        return node == null ? 0 : node.count;
+    }
+}
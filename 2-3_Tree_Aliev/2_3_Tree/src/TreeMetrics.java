@@ -0,0 +1,13 @@
+// Приёмник метрик операций дерева. Дерево без приёмника (по умолчанию)
+// не замеряет время и ничего не записывает.
+public interface TreeMetrics {
+
+    enum Operation {
+        INSERT,
+        SEARCH,
+        DELETE
+    }
+
+    // nodes - число узлов, затронутых операцией; nanos - её длительность
+    void record(Operation operation, int nodes, long nanos);
+}
@@ -0,0 +1,400 @@
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.function.Function;
+
+// Отображение K -> V на 2-3 дереве с порядком по Comparator (или естественным,
+// как у TreeMap). Значения лежат в узле рядом со своими ключами, так что
+// get/put/remove/computeIfAbsent обходятся одним спуском. Для int ключей
+// без упаковки есть IntTwoThreeMap. Не потокобезопасно.
+public class TwoThreeMap<K, V> {
+
+    // При int size ключей меньше 2^31, значит высота не больше 32
+    private static final int MAX_HEIGHT = 32;
+
+    private static final class Entry<K, V> {
+        K k1;
+        K k2;
+        V v1;
+        V v2;
+        // Число ключей: 1 или 2; 0 бывает только временно, пока удаление выравнивает дерево
+        int size;
+        Entry<K, V> left;
+        Entry<K, V> middle;
+        Entry<K, V> right;
+
+        Entry(K key, V value) {
+            this.k1 = key;
+            this.v1 = value;
+            this.size = 1;
+        }
+
+        boolean isLeaf() {
+            return left == null;
+        }
+
+        K key(int i) {
+            return i == 0 ? k1 : k2;
+        }
+
+        V value(int i) {
+            return i == 0 ? v1 : v2;
+        }
+
+        void set(int i, K key, V value) {
+            if (i == 0) {
+                k1 = key;
+                v1 = value;
+            } else {
+                k2 = key;
+                v2 = value;
+            }
+        }
+
+        void setValue(int i, V value) {
+            if (i == 0) v1 = value;
+            else v2 = value;
+        }
+
+        Entry<K, V> child(int i) {
+            switch (i) {
+                case 0: return left;
+                case 1: return middle;
+                default: return right;
+            }
+        }
+
+        void setChild(int i, Entry<K, V> child) {
+            switch (i) {
+                case 0: left = child; break;
+                case 1: middle = child; break;
+                default: right = child;
+            }
+        }
+
+    }
+
+    private final Comparator<? super K> comparator;
+    private Entry<K, V> root;
+    private int size;
+    // Число структурных изменений: по нему computeIfAbsent замечает вмешательство функции
+    private int modCount;
+
+    // Путь последнего спуска: предки в path[0, depth), номера детей в pathIndex;
+    // при промахе path[depth] - лист, куда встанет ключ
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Entry<K, V>[] path = (Entry<K, V>[]) new Entry[MAX_HEIGHT + 1];
+    private final int[] pathIndex = new int[MAX_HEIGHT];
+    private int depth;
+    // Номер найденного ключа в узле, который вернул descend
+    private int foundIndex;
+    // Число вызовов descend: по нему computeIfAbsent видит, что путь перезаписан
+    private int descents;
+
+    // Естественный порядок ключей; ключи должны быть Comparable
+    public TwoThreeMap() {
+        this(null);
+    }
+
+    public TwoThreeMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(K key) {
+        return descend(key) != null;
+    }
+
+    public V get(K key) {
+        Entry<K, V> node = descend(key);
+        return node == null ? null : node.value(foundIndex);
+    }
+
+    // Возвращает прежнее значение или null
+    public V put(K key, V value) {
+        Entry<K, V> node = descend(key);
+        if (node != null) {
+            V old = node.value(foundIndex);
+            node.setValue(foundIndex, value);
+            return old;
+        }
+        insertAtLeaf(key, value);
+        return null;
+    }
+
+    // Значение для key; при отсутствии (или null) вычисляется и сохраняется, если не null
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+        Entry<K, V> node = descend(key);
+        if (node != null) {
+            // foundIndex - общее поле, и спуск внутри функции его перезапишет
+            int index = foundIndex;
+            V value = node.value(index);
+            if (value == null) {
+                int expectedModCount = modCount;
+                value = mapping.apply(key);
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                node.setValue(index, value);
+            }
+            return value;
+        }
+        int expectedModCount = modCount;
+        int expectedDescents = descents;
+        V value = mapping.apply(key);
+        if (value != null) {
+            // Вставка идёт по сохранённому пути, поэтому функции нельзя менять отображение
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // Функция могла читать отображение и затереть путь - тогда спускаемся заново
+            if (descents != expectedDescents) descend(key);
+            insertAtLeaf(key, value);
+        }
+        return value;
+    }
+
+    // Возвращает удалённое значение или null
+    public V remove(K key) {
+        Entry<K, V> node = descend(key);
+        if (node == null) return null;
+        int keyIndex = foundIndex;
+        V old = node.value(keyIndex);
+
+        // Ключ внутреннего узла заменяем преемником - самым левым ключом правого поддерева
+        Entry<K, V> leaf = node;
+        if (!node.isLeaf()) {
+            push(node, keyIndex + 1);
+            leaf = node.child(keyIndex + 1);
+            while (!leaf.isLeaf()) {
+                push(leaf, 0);
+                leaf = leaf.left;
+            }
+            node.set(keyIndex, leaf.k1, leaf.v1);
+            keyIndex = 0;
+        }
+
+        if (keyIndex == 0) {
+            leaf.k1 = leaf.k2;
+            leaf.v1 = leaf.v2;
+        }
+        leaf.k2 = null;
+        leaf.v2 = null;
+        leaf.size--;
+        size--;
+        modCount++;
+
+        if (leaf.size == 0) {
+            rebalance(leaf);
+        }
+        return old;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    // Спуск к key с записью пути; узел с ключом (его номер - в foundIndex) или null
+    private Entry<K, V> descend(K key) {
+        descents++;
+        depth = 0;
+        Entry<K, V> node = root;
+        path[0] = null;
+        while (node != null) {
+            int c = compare(key, node.k1);
+            if (c == 0) {
+                foundIndex = 0;
+                return node;
+            }
+            int i = 0;
+            if (c > 0) {
+                i = 1;
+                if (node.size == 2) {
+                    int c2 = compare(key, node.k2);
+                    if (c2 == 0) {
+                        foundIndex = 1;
+                        return node;
+                    }
+                    if (c2 > 0) i = 2;
+                }
+            }
+            if (node.isLeaf()) {
+                path[depth] = node;
+                return null;
+            }
+            push(node, i);
+            node = node.child(i);
+        }
+        return null;
+    }
+
+    private void push(Entry<K, V> node, int childIndex) {
+        path[depth] = node;
+        pathIndex[depth++] = childIndex;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(K a, K b) {
+        return comparator != null ? comparator.compare(a, b) : ((Comparable<? super K>) a).compareTo(b);
+    }
+
+    // Вставка в лист path[depth] после промаха descend; расщепления идут вверх по пути
+    private void insertAtLeaf(K key, V value) {
+        size++;
+        modCount++;
+        Entry<K, V> node = path[depth];
+        if (node == null) {
+            compare(key, key); // как в TreeMap: проверка типа и null у первого ключа
+            root = new Entry<>(key, value);
+            return;
+        }
+        Entry<K, V> rightChild = null;
+        while (true) {
+            if (node.size == 1) {
+                if (compare(key, node.k1) < 0) {
+                    node.k2 = node.k1;
+                    node.v2 = node.v1;
+                    node.k1 = key;
+                    node.v1 = value;
+                    node.right = node.middle;
+                    node.middle = rightChild;
+                } else {
+                    node.k2 = key;
+                    node.v2 = value;
+                    node.right = rightChild;
+                }
+                node.size = 2;
+                return;
+            }
+
+            // Три ключа: node оставляет меньший, sibling получает больший
+            K promotedKey;
+            V promotedValue;
+            Entry<K, V> sibling;
+            if (compare(key, node.k1) < 0) {
+                promotedKey = node.k1;
+                promotedValue = node.v1;
+                sibling = new Entry<>(node.k2, node.v2);
+                sibling.left = node.middle;
+                sibling.middle = node.right;
+                node.k1 = key;
+                node.v1 = value;
+                node.middle = rightChild;
+            } else if (compare(key, node.k2) < 0) {
+                promotedKey = key;
+                promotedValue = value;
+                sibling = new Entry<>(node.k2, node.v2);
+                sibling.left = rightChild;
+                sibling.middle = node.right;
+            } else {
+                promotedKey = node.k2;
+                promotedValue = node.v2;
+                sibling = new Entry<>(key, value);
+                sibling.left = node.right;
+                sibling.middle = rightChild;
+            }
+            node.k2 = null;
+            node.v2 = null;
+            node.right = null;
+            node.size = 1;
+
+            if (depth == 0) {
+                root = new Entry<>(promotedKey, promotedValue);
+                root.left = node;
+                root.middle = sibling;
+                return;
+            }
+            node = path[--depth];
+            key = promotedKey;
+            value = promotedValue;
+            rightChild = sibling;
+        }
+    }
+
+    // node остался без ключей; path[0, depth) - его предки.
+    // Занимаем ключ у соседа, а если нельзя - сливаемся с ним и поднимаемся к родителю.
+    private void rebalance(Entry<K, V> node) {
+        while (true) {
+            if (depth == 0) {
+                root = node.left;
+                return;
+            }
+
+            Entry<K, V> parent = path[--depth];
+            int nodeIndex = pathIndex[depth];
+            Entry<K, V> leftSibling = nodeIndex > 0 ? parent.child(nodeIndex - 1) : null;
+            Entry<K, V> rightSibling = nodeIndex < parent.size ? parent.child(nodeIndex + 1) : null;
+
+            if (leftSibling != null && leftSibling.size == 2) {
+                node.set(0, parent.key(nodeIndex - 1), parent.value(nodeIndex - 1));
+                node.size = 1;
+                parent.set(nodeIndex - 1, leftSibling.k2, leftSibling.v2);
+                node.middle = node.left;
+                node.left = leftSibling.right;
+                leftSibling.right = null;
+                leftSibling.k2 = null;
+                leftSibling.v2 = null;
+                leftSibling.size = 1;
+                return;
+            }
+            if (rightSibling != null && rightSibling.size == 2) {
+                node.set(0, parent.key(nodeIndex), parent.value(nodeIndex));
+                node.size = 1;
+                parent.set(nodeIndex, rightSibling.k1, rightSibling.v1);
+                node.middle = rightSibling.left;
+                rightSibling.left = rightSibling.middle;
+                rightSibling.middle = rightSibling.right;
+                rightSibling.right = null;
+                rightSibling.k1 = rightSibling.k2;
+                rightSibling.v1 = rightSibling.v2;
+                rightSibling.k2 = null;
+                rightSibling.v2 = null;
+                rightSibling.size = 1;
+                return;
+            }
+
+            // Слияние (предпочитаем левого брата)
+            if (leftSibling != null) {
+                leftSibling.set(1, parent.key(nodeIndex - 1), parent.value(nodeIndex - 1));
+                leftSibling.right = node.left;
+                leftSibling.size = 2;
+                removeFromParent(parent, nodeIndex - 1, nodeIndex);
+            } else {
+                rightSibling.k2 = rightSibling.k1;
+                rightSibling.v2 = rightSibling.v1;
+                rightSibling.k1 = parent.k1;
+                rightSibling.v1 = parent.v1;
+                rightSibling.right = rightSibling.middle;
+                rightSibling.middle = rightSibling.left;
+                rightSibling.left = node.left;
+                rightSibling.size = 2;
+                removeFromParent(parent, 0, 0);
+            }
+            node.left = null;
+
+            if (parent.size > 0) return;
+            node = parent;
+        }
+    }
+
+    // Убирает из родителя ключ keyIndex и ребёнка childIndex со сдвигом остальных влево
+    private static <K, V> void removeFromParent(Entry<K, V> parent, int keyIndex, int childIndex) {
+        for (int i = keyIndex; i < parent.size - 1; i++) {
+            parent.set(i, parent.key(i + 1), parent.value(i + 1));
+        }
+        for (int i = childIndex; i < parent.size; i++) {
+            parent.setChild(i, parent.child(i + 1));
+        }
+        parent.setChild(parent.size, null);
+        parent.set(parent.size - 1, null, null);
+        parent.size--;
+    }
+}
@@ -1,419 +1,642 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.OptionalInt;
+import java.util.PrimitiveIterator;
 
 public class TwoThreeTree {
     private Node root;
-    private final List<Integer> insertOperations = new ArrayList<>();
-    private final List<Long> insertTimes = new ArrayList<>();
-    private final List<Integer> searchOperations = new ArrayList<>();
-    private final List<Long> searchTimes = new ArrayList<>();
-    private final List<Integer> deleteOperations = new ArrayList<>();
-    private final List<Long> deleteTimes = new ArrayList<>();
-
-    private static class SearchResult {
-        Node node;
-        int operations;
-
-        SearchResult(Node node, int operations) {
-            this.node = node;
-            this.operations = operations;
-        }
+    private int size;
+    // Вести ли в узлах размеры поддеревьев для rank/select
+    private final boolean orderStatistics;
+    // null - метрики выключены, время не замеряется
+    private TreeMetrics metrics;
+
+    // Высота 2-3 дерева с различными int ключами не больше 32
+    private static final int MAX_HEIGHT = 32;
+    // Путь от корня до родителя текущего листа и номера детей на нём,
+    // переиспользуются между вставками и удалениями
+    private final Node[] path = new Node[MAX_HEIGHT];
+    private final int[] pathIndex = new int[MAX_HEIGHT];
+
+    public TwoThreeTree() {
+        this(false);
     }
 
-    public boolean search(int key) {
-        long startTime = System.nanoTime();
-        SearchResult result = search(key, root, 0);
-        long elapsed = System.nanoTime() - startTime;
-
-        searchOperations.add(result.operations);
-        searchTimes.add(elapsed);
-
-        return result.node != null && result.node.keys.contains(key);
+    // orderStatistics = true включает rank/select ценой обновления счётчиков на пути
+    public TwoThreeTree(boolean orderStatistics) {
+        this.orderStatistics = orderStatistics;
     }
 
-    private SearchResult search(int key, Node node, int ops) {
-        ops++;
-        if (node == null) {
-            return new SearchResult(null, ops);
-        }
+    public boolean search(int key) {
+        long startTime = metrics != null ? System.nanoTime() : 0;
+        int ops = 0;
+        boolean found = false;
 
-        for (int i = 0; i < node.keys.size(); i++) {
+        // Итеративный спуск без промежуточных объектов; у листа все дети null
+        Node node = root;
+        while (node != null) {
             ops++;
-            if (key == node.keys.get(i)) {
-                return new SearchResult(node, ops);
-            }
-            if (key < node.keys.get(i)) {
-                if (node.isLeaf) {
-                    return new SearchResult(null, ops);
-                }
-                return search(key, node.children.get(i), ops);
+            if (node.contains(key)) {
+                found = true;
+                break;
             }
+            node = node.child(node.childIndex(key));
         }
-
-        if (node.isLeaf) {
-            return new SearchResult(null, ops);
-        }
-        return search(key, node.children.get(node.children.size() - 1), ops);
+        record(TreeMetrics.Operation.SEARCH, ops, startTime);
+        return found;
     }
 
     public void insert(int key) {
-        long startTime = System.nanoTime();
+        long startTime = metrics != null ? System.nanoTime() : 0;
         int ops = 0;
 
         if (root == null) {
-            root = new Node();
-            root.keys.add(key);
+            root = new Node(key);
             ops++;
         } else {
-            SearchResult result = search(key, root, 0);
-            ops += result.operations;
-
-            if (result.node != null && result.node.keys.contains(key)) {
-                long elapsed = System.nanoTime() - startTime;
-                insertOperations.add(ops);
-                insertTimes.add(elapsed);
-                return;
-            }
-
+            // Один спуск: проверка на дубликат и запоминание пути до листа
             Node current = root;
-            while (!current.isLeaf) {
+            int depth = 0;
+            while (true) {
                 ops++;
-                int pos = 0;
-                while (pos < current.keys.size() && key > current.keys.get(pos)) {
-                    pos++;
-                    ops++;
+                if (current.contains(key)) {
+                    record(TreeMetrics.Operation.INSERT, ops, startTime);
+                    return;
                 }
-                current = current.children.get(pos);
-            }
-
-            int pos = 0;
-            while (pos < current.keys.size() && key > current.keys.get(pos)) {
-                pos++;
-                ops++;
+                if (current.isLeaf()) break;
+                path[depth++] = current;
+                current = current.child(current.childIndex(key));
             }
-            current.keys.add(pos, key);
-            ops++;
-
-            if (current.keys.size() > 2) {
-                Node newRoot = split(current);
-                if (newRoot.parent == null) {
-                    root = newRoot;
-                    ops++;
+            if (orderStatistics) {
+                // Поддерево каждого узла на пути получает ключ; расщепления пересчитают свои узлы
+                for (int i = 0; i < depth; i++) {
+                    path[i].count++;
                 }
+                current.count++;
             }
+            ops += insertInto(current, key, depth);
         }
-
-        long elapsed = System.nanoTime() - startTime;
-        insertOperations.add(ops);
-        insertTimes.add(elapsed);
+        size++;
+        record(TreeMetrics.Operation.INSERT, ops, startTime);
     }
 
-    private Node split(Node node) {
-        if (node.keys.size() < 3) return node;
-
-        Node left = new Node();
-        left.keys.add(node.keys.get(0));
-        left.isLeaf = node.isLeaf;
-
-        Node right = new Node();
-        right.keys.add(node.keys.get(2));
-        right.isLeaf = node.isLeaf;
-
-        if (!node.isLeaf) {
-            left.children.addAll(node.children.subList(0, 2));
-            right.children.addAll(node.children.subList(2, 4));
-            for (Node child : left.children) child.parent = left;
-            for (Node child : right.children) child.parent = right;
-        }
-
-        int middleKey = node.keys.get(1);
-
-        if (node.parent == null) {
-            Node newRoot = new Node();
-            newRoot.keys.add(middleKey);
-            newRoot.children.add(left);
-            newRoot.children.add(right);
-            newRoot.isLeaf = false;
-            left.parent = newRoot;
-            right.parent = newRoot;
-            return newRoot;
-        } else {
-            Node parent = node.parent;
-            left.parent = parent;
-            right.parent = parent;
-
-            int pos = 0;
-            while (pos < parent.keys.size() && middleKey > parent.keys.get(pos)) {
-                pos++;
+    // Вставляет key в лист node; path[0, depth) - предки листа.
+    // Полный узел делится на два, средний ключ поднимается в родителя со стека пути.
+    // Возвращает число затронутых узлов.
+    private int insertInto(Node node, int key, int depth) {
+        Node rightChild = null;
+        int ops = 0;
+        while (true) {
+            ops++;
+            if (node.size == 1) {
+                if (key < node.k1) {
+                    node.k2 = node.k1;
+                    node.k1 = key;
+                    node.right = node.middle;
+                    node.setChild(1, rightChild);
+                } else {
+                    node.k2 = key;
+                    node.setChild(2, rightChild);
+                }
+                node.size = 2;
+                return ops;
             }
 
-            parent.keys.add(pos, middleKey);
-            parent.children.remove(node);
-            parent.children.add(pos, left);
-            parent.children.add(pos + 1, right);
-            parent.isLeaf = false;
+            // Три ключа: node оставляет меньший, sibling получает больший
+            int promoted;
+            Node sibling;
+            if (key < node.k1) {
+                promoted = node.k1;
+                sibling = new Node(node.k2);
+                sibling.setChild(0, node.middle);
+                sibling.setChild(1, node.right);
+                node.k1 = key;
+                node.setChild(1, rightChild);
+            } else if (key < node.k2) {
+                promoted = key;
+                sibling = new Node(node.k2);
+                sibling.setChild(0, rightChild);
+                sibling.setChild(1, node.right);
+            } else {
+                promoted = node.k2;
+                sibling = new Node(key);
+                sibling.setChild(0, node.right);
+                sibling.setChild(1, rightChild);
+            }
+            node.k2 = 0;
+            node.right = null;
+            node.size = 1;
+            if (orderStatistics) {
+                node.recount();
+                sibling.recount();
+            }
 
-            if (parent.keys.size() > 2) {
-                return split(parent);
+            if (depth == 0) {
+                root = new Node(promoted);
+                root.setChild(0, node);
+                root.setChild(1, sibling);
+                root.recount();
+                return ops + 1;
             }
-            return parent;
+            node = path[--depth];
+            key = promoted;
+            rightChild = sibling;
         }
     }
 
     public boolean delete(int key) {
-        long startTime = System.nanoTime();
+        long startTime = metrics != null ? System.nanoTime() : 0;
         int ops = 0;
 
-        if (root == null) {
-            recordDeleteMetrics(ops, startTime);
-            return false;
+        // Один спуск до листа. Если ключ во внутреннем узле, спуск продолжается
+        // к преемнику - самому левому ключу поддерева справа от ключа.
+        Node keyNode = null;
+        int keyIndex = 0;
+        int depth = 0;
+        Node leaf = root;
+        while (leaf != null) {
+            ops++;
+            int i;
+            if (keyNode == null && leaf.contains(key)) {
+                keyNode = leaf;
+                keyIndex = leaf.k1 == key ? 0 : 1;
+                i = keyIndex + 1;
+            } else {
+                i = keyNode == null ? leaf.childIndex(key) : 0;
+            }
+            if (leaf.isLeaf()) break;
+            path[depth] = leaf;
+            pathIndex[depth++] = i;
+            leaf = leaf.child(i);
         }
 
-        SearchResult result = search(key, root, 0);
-        ops += result.operations;
-
-        if (result.node == null || !result.node.keys.contains(key)) {
-            recordDeleteMetrics(ops, startTime);
+        if (keyNode == null) {
+            record(TreeMetrics.Operation.DELETE, ops, startTime);
             return false;
         }
 
-        return deleteNode(result.node, key, ops, startTime);
-    }
-
-    private boolean deleteNode(Node node, int key, int ops, long startTime) {
-        // Если это внутренний узел, заменяем на преемника
-        if (!node.isLeaf) {
-            int keyIndex = node.keys.indexOf(key);
-            if (keyIndex == -1) {
-                recordDeleteMetrics(ops, startTime);
-                return false;
-            }
-
-            // Находим преемника (минимальный в правом поддереве)
-            Node successorNode = findSuccessor(node, keyIndex);
-            if (successorNode == null) {
-                recordDeleteMetrics(ops, startTime);
-                return false;
-            }
+        if (leaf != keyNode) {
+            keyNode.setKey(keyIndex, leaf.k1);
+            keyIndex = 0;
+        }
 
-            int successorKey = findMinKey(successorNode);
-            if (!delete(successorKey)) {
-                recordDeleteMetrics(ops, startTime);
-                return false;
+        // Удаление из листа
+        if (keyIndex == 0) {
+            leaf.k1 = leaf.k2;
+        }
+        leaf.k2 = 0;
+        leaf.size--;
+        size--;
+        if (orderStatistics) {
+            for (int i = 0; i < depth; i++) {
+                path[i].count--;
             }
+            leaf.count--;
+        }
 
-            // Безопасная замена ключа
-            if (keyIndex < node.keys.size()) {
-                node.keys.set(keyIndex, successorKey);
-                recordDeleteMetrics(ops + 1, startTime);
-                return true;
-            }
-            recordDeleteMetrics(ops, startTime);
-            return false;
+        // Балансировка если нужно
+        if (leaf.size == 0) {
+            ops += balanceAfterDelete(leaf, depth);
         }
 
-        // Удаление из листа
-        return deleteFromLeaf(node, key, ops, startTime);
+        record(TreeMetrics.Operation.DELETE, ops, startTime);
+        return true;
     }
 
-    private int findMinKey(Node node) {
-        if (node == null || node.keys.isEmpty()) {
-            throw new IllegalStateException("Invalid node for finding minimum key");
+    private void record(TreeMetrics.Operation operation, int ops, long startTime) {
+        if (metrics != null) {
+            metrics.record(operation, ops, System.nanoTime() - startTime);
         }
-        return node.keys.get(0);
     }
 
-    private Node findSuccessor(Node node, int keyIndex) {
-        if (node.children.size() > keyIndex + 1) {
-            Node successorNode = node.children.get(keyIndex + 1);
-            while (!successorNode.isLeaf && !successorNode.children.isEmpty()) {
-                successorNode = successorNode.children.get(0);
+    // node остался без ключей (и с единственным ребёнком в left, если он не лист);
+    // path[0, depth) - его предки, pathIndex - номера детей на пути.
+    // Занимаем ключ у соседа, а если нельзя - сливаемся с ним и поднимаемся к родителю.
+    // Возвращает число затронутых узлов.
+    private int balanceAfterDelete(Node node, int depth) {
+        int ops = 0;
+        while (true) {
+            ops++;
+            if (depth == 0) {
+                // Опустевший корень заменяется своим единственным ребёнком
+                root = node.left;
+                return ops;
             }
-            return successorNode;
-        }
-        return null;
-    }
 
+            Node parent = path[--depth];
+            int nodeIndex = pathIndex[depth];
+            Node leftSibling = nodeIndex > 0 ? parent.child(nodeIndex - 1) : null;
+            Node rightSibling = nodeIndex < parent.size ? parent.child(nodeIndex + 1) : null;
 
-    private boolean deleteFromLeaf(Node node, int key, int ops, long startTime) {
-        // Безопасное удаление ключа
-        if (!node.keys.remove((Integer) key)) {
-            recordDeleteMetrics(ops, startTime);
-            return false;
-        }
-        ops++;
+            // Попытка занять у соседей
+            if (leftSibling != null && leftSibling.size == 2) {
+                borrowLeft(parent, nodeIndex, leftSibling, node);
+                recount(node, leftSibling);
+                return ops;
+            }
+            if (rightSibling != null && rightSibling.size == 2) {
+                borrowRight(parent, nodeIndex, node, rightSibling);
+                recount(node, rightSibling);
+                return ops;
+            }
 
-        // Балансировка если нужно
-        if (node.keys.isEmpty()) {
-            if (node == root) {
-                handleEmptyRoot();
+            // Если нельзя занять - делаем слияние (предпочитаем левого брата)
+            if (leftSibling != null) {
+                leftSibling.k2 = parent.key(nodeIndex - 1);
+                leftSibling.setChild(2, node.left);
+                leftSibling.size = 2;
+                removeFromParent(parent, nodeIndex - 1, nodeIndex);
+                recount(leftSibling, null);
             } else {
-                balanceAfterDelete(node);
+                rightSibling.k2 = rightSibling.k1;
+                rightSibling.k1 = parent.k1;
+                rightSibling.right = rightSibling.middle;
+                rightSibling.middle = rightSibling.left;
+                rightSibling.setChild(0, node.left);
+                rightSibling.size = 2;
+                removeFromParent(parent, 0, 0);
+                recount(rightSibling, null);
             }
-        }
+            node.left = null;
 
-        recordDeleteMetrics(ops, startTime);
-        return true;
+            // Если родитель стал пустым, балансируем его
+            if (parent.size > 0) {
+                return ops;
+            }
+            node = parent;
+        }
     }
 
-    private void handleEmptyRoot() {
-        if (root.children.isEmpty()) {
-            root = null;
-        } else {
-            root = root.children.get(0);
-            root.parent = null;
-        }
+    // Ключи перешли между соседями, сумма у родителя не изменилась
+    private void recount(Node a, Node b) {
+        if (!orderStatistics) return;
+        a.recount();
+        if (b != null) b.recount();
     }
 
+    private void borrowLeft(Node parent, int nodeIndex, Node leftSibling, Node node) {
+        // Ключ родителя спускается в узел, максимальный ключ левого брата поднимается на его место
+        node.k1 = parent.key(nodeIndex - 1);
+        node.size = 1;
+        parent.setKey(nodeIndex - 1, leftSibling.k2);
+
+        // Последний ребёнок левого брата переходит к узлу
+        node.middle = node.left;
+        node.setChild(0, leftSibling.right);
+        leftSibling.right = null;
+        leftSibling.k2 = 0;
+        leftSibling.size = 1;
+    }
 
-    private void recordDeleteMetrics(int ops, long startTime) {
-        long elapsed = System.nanoTime() - startTime;
-        deleteOperations.add(ops);
-        deleteTimes.add(elapsed);
+    private void borrowRight(Node parent, int nodeIndex, Node node, Node rightSibling) {
+        // Ключ родителя спускается в узел, минимальный ключ правого брата поднимается на его место
+        node.k1 = parent.key(nodeIndex);
+        node.size = 1;
+        parent.setKey(nodeIndex, rightSibling.k1);
+
+        // Первый ребёнок правого брата переходит к узлу
+        node.setChild(1, rightSibling.left);
+        rightSibling.left = rightSibling.middle;
+        rightSibling.middle = rightSibling.right;
+        rightSibling.right = null;
+        rightSibling.k1 = rightSibling.k2;
+        rightSibling.k2 = 0;
+        rightSibling.size = 1;
     }
 
-    private void balanceAfterDelete(Node node) {
-        if (node == null || node.parent == null || !node.keys.isEmpty()) {
-            return;
+    // Убирает из родителя ключ keyIndex и ребёнка childIndex со сдвигом остальных влево
+    private void removeFromParent(Node parent, int keyIndex, int childIndex) {
+        for (int i = keyIndex; i < parent.size - 1; i++) {
+            parent.setKey(i, parent.key(i + 1));
         }
-
-        Node parent = node.parent;
-        int nodeIndex = parent.children.indexOf(node);
-        if (nodeIndex == -1) return;
-
-        // Попытка занять у соседей
-        if (tryBorrowFromSibling(parent, nodeIndex)) {
-            return;
+        for (int i = childIndex; i < parent.size; i++) {
+            parent.setChild(i, parent.child(i + 1));
         }
+        parent.setChild(parent.size, null);
+        parent.setKey(parent.size - 1, 0);
+        parent.size--;
+    }
 
-        // Если нельзя занять - делаем слияние
-        mergeWithSibling(parent, nodeIndex);
+    public int size() {
+        return size;
     }
 
-    private void performBorrowRight(Node parent, int keyIndex, Node rightSibling) {
-        Node node = parent.children.get(keyIndex);
+    // Снимок для MappedTwoThreeTree: узлы по уровням в фиксированном формате
+    public void writeSnapshot(Path path) throws IOException {
+        MappedTwoThreeTree.write(root, size, path);
+    }
 
-        // 1. Перемещаем ключ из родителя в текущий узел
-        node.keys.add(parent.keys.get(keyIndex));
+    public int min() {
+        Node node = root;
+        if (node == null) throw new NoSuchElementException("Дерево пусто");
+        while (!node.isLeaf()) {
+            node = node.left;
+        }
+        return node.k1;
+    }
 
-        // 2. Перемещаем минимальный ключ из правого брата в родителя
-        parent.keys.set(keyIndex, rightSibling.keys.remove(0));
+    public int max() {
+        Node node = root;
+        if (node == null) throw new NoSuchElementException("Дерево пусто");
+        while (!node.isLeaf()) {
+            node = node.child(node.size);
+        }
+        return node.key(node.size - 1);
+    }
 
-        // 3. Перемещаем первого ребенка правого брата, если есть
-        if (!rightSibling.isLeaf && !rightSibling.children.isEmpty()) {
-            Node child = rightSibling.children.remove(0);
-            node.children.add(child);
-            child.parent = node;
+    // Наибольший ключ не больше key
+    public OptionalInt floor(int key) {
+        boolean found = false;
+        int best = 0;
+        for (Node node = root; node != null; ) {
+            if (node.contains(key)) return OptionalInt.of(key);
+            int i = node.childIndex(key);
+            if (i > 0) {
+                best = node.key(i - 1);
+                found = true;
+            }
+            node = node.child(i);
         }
+        return found ? OptionalInt.of(best) : OptionalInt.empty();
     }
 
-    private void mergeWithSibling(Node parent, int nodeIndex) {
-        Node node = parent.children.get(nodeIndex);
+    // Наименьший ключ не меньше key
+    public OptionalInt ceiling(int key) {
+        boolean found = false;
+        int best = 0;
+        for (Node node = root; node != null; ) {
+            if (node.contains(key)) return OptionalInt.of(key);
+            int i = node.childIndex(key);
+            if (i < node.size) {
+                best = node.key(i);
+                found = true;
+            }
+            node = node.child(i);
+        }
+        return found ? OptionalInt.of(best) : OptionalInt.empty();
+    }
 
-        // Определяем с каким братом будем сливаться (предпочитаем левого)
-        if (nodeIndex > 0) {
-            // Слияние с левым братом
-            Node leftSibling = parent.children.get(nodeIndex - 1);
-            mergeNodes(parent, nodeIndex - 1, leftSibling, node);
-        } else {
-            // Слияние с правым братом
-            Node rightSibling = parent.children.get(nodeIndex + 1);
-            mergeNodes(parent, nodeIndex, node, rightSibling);
+    // Число ключей меньше key, за O(log n); нужен orderStatistics
+    public int rank(int key) {
+        requireOrderStatistics();
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            if (key == node.k1) {
+                return rank + Node.count(node.left);
+            }
+            int i = node.childIndex(key);
+            // Всё левее поддерева i меньше key: дети 0..i-1 и ключи 0..i-1
+            for (int c = 0; c < i; c++) {
+                rank += Node.count(node.child(c)) + 1;
+            }
+            if (i == 2 && key == node.k2) {
+                return rank - 1;
+            }
+            node = node.child(i);
         }
+        return rank;
+    }
 
-        // Если родитель стал пустым и это корень
-        if (parent.keys.isEmpty() && parent == root) {
-            root = parent.children.get(0);
-            root.parent = null;
+    // Ключ с порядковым номером index (с нуля), за O(log n); нужен orderStatistics
+    public int select(int index) {
+        requireOrderStatistics();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + index + ", размер " + size);
+        }
+        Node node = root;
+        while (true) {
+            for (int c = 0; ; c++) {
+                int left = Node.count(node.child(c));
+                if (index < left) {
+                    node = node.child(c);
+                    break;
+                }
+                if (index == left) {
+                    return node.key(c);
+                }
+                index -= left + 1;
+            }
         }
     }
 
-    private void mergeNodes(Node parent, int keyIndex, Node leftNode, Node rightNode) {
-        // 1. Переносим ключ из родителя в левый узел
-        leftNode.keys.add(parent.keys.remove(keyIndex));
+    private void requireOrderStatistics() {
+        if (!orderStatistics) {
+            throw new IllegalStateException("Дерево создано без orderStatistics");
+        }
+    }
+
+    // Все ключи по возрастанию
+    public KeyIterator iterator() {
+        return new KeyIterator(root, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
 
-        // 2. Переносим все ключи из правого узла
-        leftNode.keys.addAll(rightNode.keys);
+    // Ключи из [lo, hi] по возрастанию за O(log n + k)
+    public KeyIterator range(int lo, int hi) {
+        return new KeyIterator(root, lo, hi);
+    }
 
-        // 3. Переносим детей из правого узла, если есть
-        if (!rightNode.isLeaf) {
-            for (Node child : rightNode.children) {
-                child.parent = leftNode;
+    // Обход по возрастанию без рекурсии и без выделения памяти на элемент:
+    // стек пути хранит узлы и номер следующего ключа в каждом.
+    // Изменять дерево во время обхода нельзя.
+    public static final class KeyIterator implements PrimitiveIterator.OfInt {
+        private final Node[] nodes = new Node[MAX_HEIGHT];
+        private final int[] positions = new int[MAX_HEIGHT];
+        private final int hi;
+        private int depth;
+        private int next;
+        private boolean hasNext;
+
+        KeyIterator(Node root, int lo, int hi) {
+            this.hi = hi;
+            // Спуск к первому ключу >= lo; у предков запоминается ключ, идущий после поддерева
+            for (Node node = root; node != null; ) {
+                int i = node.childIndex(lo);
+                boolean exact = node.contains(lo);
+                if (exact) i = node.k1 == lo ? 0 : 1;
+                nodes[depth] = node;
+                positions[depth++] = i;
+                if (exact) break;
+                node = node.child(i);
             }
-            leftNode.children.addAll(rightNode.children);
+            advance();
         }
 
-        // 4. Удаляем правый узел из родителя
-        parent.children.remove(keyIndex + 1);
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
 
-        // 5. Если родитель стал слишком маленьким, балансируем его
-        if (parent.keys.size() < 1 && parent != root) {
-            balanceAfterDelete(parent);
+        @Override
+        public int nextInt() {
+            if (!hasNext) throw new NoSuchElementException();
+            int key = next;
+            advance();
+            return key;
         }
-    }
 
-    private boolean tryBorrowFromSibling(Node parent, int nodeIndex) {
-        // Пытаемся занять у левого брата
-        if (nodeIndex > 0) {
-            Node leftSibling = parent.children.get(nodeIndex - 1);
-            if (leftSibling.keys.size() > 1) {
-                performBorrowLeft(parent, nodeIndex - 1, leftSibling);
-                return true;
+        private void advance() {
+            while (depth > 0) {
+                Node node = nodes[depth - 1];
+                int i = positions[depth - 1];
+                if (i < node.size) {
+                    int key = node.key(i);
+                    positions[depth - 1] = i + 1;
+                    // Следующим пойдёт самый левый ключ поддерева справа от key
+                    for (Node child = node.child(i + 1); child != null; child = child.left) {
+                        nodes[depth] = child;
+                        positions[depth++] = 0;
+                    }
+                    hasNext = key <= hi;
+                    next = key;
+                    if (!hasNext) depth = 0;
+                    return;
+                }
+                nodes[--depth] = null;
             }
+            hasNext = false;
         }
+    }
 
-        // Пытаемся занять у правого брата
-        if (nodeIndex < parent.children.size() - 1) {
-            Node rightSibling = parent.children.get(nodeIndex + 1);
-            if (rightSibling.keys.size() > 1) {
-                performBorrowRight(parent, nodeIndex, rightSibling);
-                return true;
+    // Строит дерево заново из возрастающего массива ключей за O(n), снизу вверх,
+    // без расщеплений. Повторяющиеся ключи пропускаются, прежнее содержимое теряется.
+    public void bulkLoad(int[] sortedKeys) {
+        int n = 0;
+        int[] keys = sortedKeys.clone();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0 && keys[i] < keys[i - 1]) {
+                throw new IllegalArgumentException("Ключи не упорядочены по возрастанию: индекс " + i);
+            }
+            if (n == 0 || keys[i] != keys[n - 1]) {
+                keys[n++] = keys[i];
             }
         }
-
-        return false;
+        load(keys, n);
     }
 
-    private void performBorrowLeft(Node parent, int keyIndex, Node leftSibling) {
-        Node node = parent.children.get(keyIndex + 1);
-
-        // Перемещаем ключ из родителя в текущий узел
-        node.keys.add(0, parent.keys.get(keyIndex));
+    // Добавляет пачку ключей в любом порядке. Пачка сортируется и очищается от повторов;
+    // если она мала относительно дерева, ключи вставляются по одному, иначе
+    // ключи дерева за один обход сливаются с пачкой и дерево строится заново.
+    public void insertAll(int[] keys) {
+        int[] batch = keys.clone();
+        Arrays.sort(batch);
+        int k = 0;
+        for (int i = 0; i < batch.length; i++) {
+            if (k == 0 || batch[i] != batch[k - 1]) {
+                batch[k++] = batch[i];
+            }
+        }
 
-        // Перемещаем максимальный ключ из левого брата в родителя
-        parent.keys.set(keyIndex, leftSibling.keys.remove(leftSibling.keys.size() - 1));
+        // k спусков по ~log2(size) узлов против перестройки за size + k
+        if ((long) k * (32 - Integer.numberOfLeadingZeros(size)) < size) {
+            for (int i = 0; i < k; i++) {
+                insert(batch[i]);
+            }
+            return;
+        }
 
-        // Перемещаем последнего ребенка левого брата, если есть
-        if (!leftSibling.isLeaf && !leftSibling.children.isEmpty()) {
-            Node child = leftSibling.children.remove(leftSibling.children.size() - 1);
-            node.children.add(0, child);
-            child.parent = node;
+        int[] existing = new int[size];
+        int m = collectKeys(root, existing, 0);
+        int[] merged = new int[m + k];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < m && j < k) {
+            if (existing[i] < batch[j]) {
+                merged[n++] = existing[i++];
+            } else if (existing[i] > batch[j]) {
+                merged[n++] = batch[j++];
+            } else {
+                merged[n++] = existing[i++];
+                j++;
+            }
         }
+        while (i < m) merged[n++] = existing[i++];
+        while (j < k) merged[n++] = batch[j++];
+        load(merged, n);
     }
 
+    // Ключи поддерева в порядке возрастания; возвращает новую позицию в out
+    private int collectKeys(Node node, int[] out, int pos) {
+        if (node == null) return pos;
+        pos = collectKeys(node.left, out, pos);
+        out[pos++] = node.k1;
+        pos = collectKeys(node.middle, out, pos);
+        if (node.size == 2) {
+            out[pos++] = node.k2;
+            pos = collectKeys(node.right, out, pos);
+        }
+        return pos;
+    }
 
-    // Методы для получения статистики
-    public double getAverageInsertOperations() {
-        return insertOperations.stream().mapToInt(Integer::intValue).average().orElse(0);
+    private void load(int[] keys, int n) {
+        size = n;
+        if (n == 0) {
+            root = null;
+            return;
+        }
+        // Наименьшая высота, при которой n ключей помещаются в полные 3-узлы
+        int height = 1;
+        while (maxKeys(height) < n) {
+            height++;
+        }
+        root = build(keys, 0, n, height);
     }
 
-    public double getAverageInsertTimeNanos() {
-        return insertTimes.stream().mapToLong(Long::longValue).average().orElse(0);
+    // Поддерево высоты height из keys[from, to). Узел берёт трёх детей, если каждому
+    // достаётся не меньше минимума для поддерева на уровень ниже, - так узлы плотнее.
+    private Node build(int[] keys, int from, int to, int height) {
+        int count = to - from;
+        if (height == 1) {
+            Node leaf = new Node(keys[from]);
+            if (count == 2) {
+                leaf.k2 = keys[from + 1];
+                leaf.size = 2;
+                leaf.count = 2;
+            }
+            return leaf;
+        }
+
+        int children = count - 2 >= 3 * minKeys(height - 1) ? 3 : 2;
+        int childKeys = count - (children - 1);
+        int end = from + (childKeys + children - 1) / children;
+        Node node = new Node(keys[end]);
+        node.setChild(0, build(keys, from, end, height - 1));
+        int start = end + 1;
+        if (children == 2) {
+            node.setChild(1, build(keys, start, to, height - 1));
+        } else {
+            end = start + (childKeys - (end - from) + 1) / 2;
+            node.k2 = keys[end];
+            node.size = 2;
+            node.setChild(1, build(keys, start, end, height - 1));
+            node.setChild(2, build(keys, end + 1, to, height - 1));
+        }
+        node.recount();
+        return node;
     }
 
-    public double getAverageSearchOperations() {
-        return searchOperations.stream().mapToInt(Integer::intValue).average().orElse(0);
+    // Наименьшее и наибольшее число ключей в 2-3 дереве высоты height
+    private static long minKeys(int height) {
+        return (1L << height) - 1;
     }
 
-    public double getAverageSearchTimeNanos() {
-        return searchTimes.stream().mapToLong(Long::longValue).average().orElse(0);
+    private static long maxKeys(int height) {
+        long keys = 1;
+        for (int i = 0; i < height; i++) {
+            keys *= 3;
+        }
+        return keys - 1;
     }
 
-    public double getAverageDeleteOperations() {
-        return deleteOperations.stream().mapToInt(Integer::intValue).average().orElse(0);
+    // Подключает приёмник метрик; null выключает замеры
+    public void setMetrics(TreeMetrics metrics) {
+        this.metrics = metrics;
     }
 
-    public double getAverageDeleteTimeNanos() {
-        return deleteTimes.stream().mapToLong(Long::longValue).average().orElse(0);
+    public TreeMetrics getMetrics() {
+        return metrics;
     }
-}
\ No newline at end of file
+}
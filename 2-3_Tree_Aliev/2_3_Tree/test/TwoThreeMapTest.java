@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Проверки IntTwoThreeMap и TwoThreeMap против TreeMap. Запуск: main, без аргументов;
+// при расхождении бросается AssertionError.
+public class TwoThreeMapTest {
+
+    private static final int MAPS = 2000;
+
+    public static void main(String[] args) {
+        computeIfAbsentWithReentrantReads();
+        System.out.println("ok");
+    }
+
+    // Функция computeIfAbsent читает отображение и перезаписывает существующие ключи:
+    // структура не меняется, но сохранённый спуском путь затирается
+    private static void computeIfAbsentWithReentrantReads() {
+        Random random = new Random(20);
+        for (int round = 0; round < MAPS; round++) {
+            IntTwoThreeMap<String> intMap = new IntTwoThreeMap<>();
+            TwoThreeMap<Integer, String> map = new TwoThreeMap<>();
+            TreeMap<Integer, String> expected = new TreeMap<>();
+            int range = 1 + random.nextInt(2000);
+            for (int i = random.nextInt(200); i > 0; i--) {
+                int key = random.nextInt(range);
+                String value = "p" + key;
+                intMap.put(key, value);
+                map.put(key, value);
+                expected.put(key, value);
+            }
+
+            for (int op = 0; op < 300; op++) {
+                int key = random.nextInt(range);
+                String value = "c" + op;
+                List<Integer> keys = new ArrayList<>(expected.keySet());
+                int existing = keys.isEmpty() ? -1 : keys.get(random.nextInt(keys.size()));
+                int missing = range + random.nextInt(range);
+                int kind = random.nextInt(5);
+
+                String got = intMap.computeIfAbsent(key, k -> {
+                    reenter(intMap, kind, existing, missing);
+                    return value;
+                });
+                String gotGeneric = map.computeIfAbsent(key, k -> {
+                    reenter(map, kind, existing, missing);
+                    return value;
+                });
+                // Функция вызывается, только если ключа ещё нет
+                if (!expected.containsKey(key) && existing >= 0 && kind == 1) {
+                    expected.put(existing, "r" + existing);
+                }
+                String want = expected.computeIfAbsent(key, k -> value);
+                check(want.equals(got), "IntTwoThreeMap.computeIfAbsent вернул " + got + ", ожидалось " + want);
+                check(want.equals(gotGeneric), "TwoThreeMap.computeIfAbsent вернул " + gotGeneric + ", ожидалось " + want);
+            }
+
+            check(intMap.size() == expected.size(), "размер IntTwoThreeMap");
+            check(map.size() == expected.size(), "размер TwoThreeMap");
+            for (int key : expected.keySet()) {
+                String want = expected.get(key);
+                check(want.equals(intMap.get(key)), "IntTwoThreeMap потерял ключ " + key);
+                check(want.equals(map.get(key)), "TwoThreeMap потерял ключ " + key);
+            }
+            // Удаление проходит по всей структуре и ломается на неверно связанных узлах
+            for (int key : expected.keySet()) {
+                check(Objects.equals(expected.get(key), intMap.remove(key)), "IntTwoThreeMap.remove " + key);
+                check(Objects.equals(expected.get(key), map.remove(key)), "TwoThreeMap.remove " + key);
+            }
+            check(intMap.isEmpty() && map.isEmpty(), "после удаления всех ключей отображение не пусто");
+        }
+    }
+
+    private static void reenter(IntTwoThreeMap<String> map, int kind, int existing, int missing) {
+        switch (kind) {
+            case 0: map.get(existing); break;
+            case 1: if (existing >= 0) map.put(existing, "r" + existing); break;
+            case 2: map.containsKey(existing); break;
+            case 3: map.remove(missing); break;
+            default: if (existing >= 0) map.computeIfAbsent(existing, k -> "never");
+        }
+    }
+
+    private static void reenter(TwoThreeMap<Integer, String> map, int kind, int existing, int missing) {
+        switch (kind) {
+            case 0: map.get(existing); break;
+            case 1: if (existing >= 0) map.put(existing, "r" + existing); break;
+            case 2: map.containsKey(existing); break;
+            case 3: map.remove(missing); break;
+            default: if (existing >= 0) map.computeIfAbsent(existing, k -> "never");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
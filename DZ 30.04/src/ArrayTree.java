@@ -0,0 +1,280 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+
+// Двоичное дерево из Node, уложенное в массивы int вместо отдельных объектов.
+// Полное дерево хранится неявно, как куча: дети узла i - это 2i+1 и 2i+2,
+// а values идут по уровням. Дерево другой формы нумеруется в прямом порядке;
+// номера детей лежат в параллельных массивах left/right (-1 - ребёнка нет).
+// Снимок не следит за исходным деревом: после его изменения нужен новый of().
+public final class ArrayTree {
+
+    // Меньшие куски массива агрегируются одной задачей
+    private static final int SEQUENTIAL_CUTOFF = 1 << 14;
+    private static final int INITIAL_STACK = 64;
+
+    private final int[] values;
+    // null у неявной раскладки
+    private final int[] left;
+    private final int[] right;
+
+    private ArrayTree(int[] values, int[] left, int[] right) {
+        this.values = values;
+        this.left = left;
+        this.right = right;
+    }
+
+    public static ArrayTree of(Node root) {
+        if (root == null) return new ArrayTree(new int[0], null, null);
+
+        // Узлы по уровням; массив сам служит очередью, каждый узел попадает в него один раз
+        Node[] byLevel = new Node[INITIAL_STACK];
+        byLevel[0] = root;
+        int n = 1;
+        // Полное дерево: при обходе по уровням после первого пропуска детей больше нет
+        boolean complete = true;
+        boolean gap = false;
+        for (int i = 0; i < n; i++) {
+            Node node = byLevel[i];
+            if (n + 2 > byLevel.length) byLevel = Arrays.copyOf(byLevel, byLevel.length * 2);
+            if (node.left == null) {
+                gap = true;
+            } else {
+                if (gap) complete = false;
+                byLevel[n++] = node.left;
+            }
+            if (node.right == null) {
+                gap = true;
+            } else {
+                if (gap) complete = false;
+                byLevel[n++] = node.right;
+            }
+        }
+
+        int[] values = new int[n];
+        if (complete) {
+            for (int i = 0; i < n; i++) {
+                values[i] = byLevel[i].d;
+            }
+            return new ArrayTree(values, null, null);
+        }
+
+        // Прямой порядок: левый ребёнок лежит сразу за родителем
+        int[] left = new int[n];
+        int[] right = new int[n];
+        Node[] stack = new Node[INITIAL_STACK];
+        // Куда записать номер узла из стека: parent * 2 + (0 - левый, 1 - правый), -1 у корня
+        int[] slots = new int[INITIAL_STACK];
+        int top = 0;
+        stack[top] = root;
+        slots[top++] = -1;
+        int next = 0;
+        while (top > 0) {
+            Node node = stack[--top];
+            int slot = slots[top];
+            stack[top] = null;
+            int index = next++;
+            values[index] = node.d;
+            left[index] = -1;
+            right[index] = -1;
+            if (slot >= 0) {
+                if ((slot & 1) == 0) left[slot >> 1] = index;
+                else right[slot >> 1] = index;
+            }
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                slots = Arrays.copyOf(slots, slots.length * 2);
+            }
+            if (node.right != null) {
+                stack[top] = node.right;
+                slots[top++] = index * 2 + 1;
+            }
+            if (node.left != null) {
+                stack[top] = node.left;
+                slots[top++] = index * 2;
+            }
+        }
+        return new ArrayTree(values, left, right);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    // true, если дерево полное и хранится неявно
+    public boolean isImplicit() {
+        return left == null;
+    }
+
+    private int leftOf(int i) {
+        if (left != null) return left[i];
+        int child = 2 * i + 1;
+        return child < values.length ? child : -1;
+    }
+
+    private int rightOf(int i) {
+        if (right != null) return right[i];
+        int child = 2 * i + 2;
+        return child < values.length ? child : -1;
+    }
+
+    // Обходы повторяют Traversal, но стеки и очереди хранят номера узлов в int[]
+
+    public void preOrder(IntConsumer visitor) {
+        if (left != null) {
+            // Узлы и так пронумерованы в прямом порядке
+            for (int value : values) {
+                visitor.accept(value);
+            }
+            return;
+        }
+        if (values.length == 0) return;
+        int[] stack = new int[INITIAL_STACK];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int i = stack[--top];
+            visitor.accept(values[i]);
+            if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            int r = rightOf(i);
+            int l = leftOf(i);
+            if (r >= 0) stack[top++] = r;
+            if (l >= 0) stack[top++] = l;
+        }
+    }
+
+    public void inOrder(IntConsumer visitor) {
+        if (left == null) {
+            inOrderImplicit(visitor);
+            return;
+        }
+        int[] stack = new int[INITIAL_STACK];
+        int top = 0;
+        int i = values.length == 0 ? -1 : 0;
+        while (i >= 0 || top > 0) {
+            while (i >= 0) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = i;
+                i = leftOf(i);
+            }
+            i = stack[--top];
+            visitor.accept(values[i]);
+            i = rightOf(i);
+        }
+    }
+
+    // В неявной раскладке родитель вычисляется, поэтому стек не нужен:
+    // преемник - самый левый узел правого поддерева, а если его нет - первый предок,
+    // до которого поднимаемся из левого ребёнка
+    private void inOrderImplicit(IntConsumer visitor) {
+        int n = values.length;
+        if (n == 0) return;
+        int i = 0;
+        while (2 * i + 1 < n) i = 2 * i + 1;
+        while (true) {
+            visitor.accept(values[i]);
+            if (2 * i + 2 < n) {
+                i = 2 * i + 2;
+                while (2 * i + 1 < n) i = 2 * i + 1;
+            } else {
+                // Правые дети имеют чётные номера
+                while (i > 0 && (i & 1) == 0) i = (i - 1) >> 1;
+                if (i == 0) return;
+                i = (i - 1) >> 1;
+            }
+        }
+    }
+
+    public void postOrder(IntConsumer visitor) {
+        int[] stack = new int[INITIAL_STACK];
+        int top = 0;
+        int i = values.length == 0 ? -1 : 0;
+        int last = -1;
+        while (i >= 0 || top > 0) {
+            while (i >= 0) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = i;
+                i = leftOf(i);
+            }
+            int peek = stack[top - 1];
+            int r = rightOf(peek);
+            if (r >= 0 && r != last) {
+                i = r;
+            } else {
+                visitor.accept(values[peek]);
+                last = peek;
+                top--;
+            }
+        }
+    }
+
+    public void levelOrder(IntConsumer visitor) {
+        if (left == null) {
+            // Неявная раскладка уже идёт по уровням
+            for (int value : values) {
+                visitor.accept(value);
+            }
+            return;
+        }
+        if (values.length == 0) return;
+        // Каждый узел встаёт в очередь один раз, так что хватает массива на size() номеров
+        int[] queue = new int[values.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            int i = queue[head++];
+            visitor.accept(values[i]);
+            if (left[i] >= 0) queue[tail++] = left[i];
+            if (right[i] >= 0) queue[tail++] = right[i];
+        }
+    }
+
+    // Агрегат не зависит от формы дерева, поэтому это просто проход по values
+    public TreeStats aggregate() {
+        return aggregate(values, 0, values.length);
+    }
+
+    public TreeStats aggregate(ForkJoinPool pool) {
+        if (values.length <= SEQUENTIAL_CUTOFF) return aggregate();
+        return pool.invoke(new AggregateTask(values, 0, values.length));
+    }
+
+    private static TreeStats aggregate(int[] values, int from, int to) {
+        if (from == to) return TreeStats.EMPTY;
+        long sum = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            int v = values[i];
+            sum += v;
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+        return new TreeStats(to - from, sum, min, max);
+    }
+
+    @SuppressWarnings("serial")
+    private static final class AggregateTask extends RecursiveTask<TreeStats> {
+        private final int[] values;
+        private final int from;
+        private final int to;
+
+        AggregateTask(int[] values, int from, int to) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TreeStats compute() {
+            if (to - from <= SEQUENTIAL_CUTOFF) return aggregate(values, from, to);
+            int mid = (from + to) >>> 1;
+            AggregateTask right = new AggregateTask(values, mid, to);
+            right.fork();
+            TreeStats leftStats = new AggregateTask(values, from, mid).compute();
+            return leftStats.combine(right.join());
+        }
+    }
+}
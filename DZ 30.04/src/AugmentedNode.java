@@ -0,0 +1,63 @@
+// Узел дерева, хранящий сводку по своему поддереву. Поля пересчитывает AugmentedTree.
+public class AugmentedNode {
+    int d;
+    AugmentedNode left;
+    AugmentedNode right;
+    // Ссылка на родителя нужна, чтобы после изменения пересчитать сводки до корня
+    AugmentedNode parent;
+
+    // Сводка по поддереву: число узлов, сумма, минимум и максимум
+    int size;
+    long sum;
+    int min;
+    int max;
+
+    public AugmentedNode(int d) {
+        this.d = d;
+        this.size = 1;
+        this.sum = d;
+        this.min = d;
+        this.max = d;
+    }
+
+    public int getValue() {
+        return d;
+    }
+
+    public AugmentedNode getLeft() {
+        return left;
+    }
+
+    public AugmentedNode getRight() {
+        return right;
+    }
+
+    public AugmentedNode getParent() {
+        return parent;
+    }
+
+    // Сводка поддерева с корнем в этом узле, O(1)
+    public TreeStats stats() {
+        return new TreeStats(size, sum, min, max);
+    }
+
+    // Пересчитывает сводку по детям, у которых она уже верна
+    void recount() {
+        size = 1;
+        sum = d;
+        min = d;
+        max = d;
+        if (left != null) {
+            size += left.size;
+            sum += left.sum;
+            if (left.min < min) min = left.min;
+            if (left.max > max) max = left.max;
+        }
+        if (right != null) {
+            size += right.size;
+            sum += right.sum;
+            if (right.min < min) min = right.min;
+            if (right.max > max) max = right.max;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+// Двоичное дерево произвольной формы, где каждый узел хранит число узлов, сумму,
+// минимум и максимум своего поддерева. После вставки, удаления или смены значения
+// сводки пересчитываются по пути до корня (O(высоты)), зато max/min/sum/size всего
+// дерева и любого поддерева отдаются за O(1), а сводка по отрезку позиций
+// симметричного порядка - за O(высоты).
+public class AugmentedTree {
+    private static final int INITIAL_STACK = 64;
+
+    private AugmentedNode root;
+
+    public AugmentedTree() {
+    }
+
+    // Копия дерева из Node с посчитанными сводками; форма и порядок сохраняются
+    public static AugmentedTree of(Node root) {
+        AugmentedTree tree = new AugmentedTree();
+        if (root == null) return tree;
+
+        // Прямой обход создаёт копии; дети в нём идут после родителя,
+        // поэтому сводки считаются проходом по копиям в обратном порядке
+        AugmentedNode[] created = new AugmentedNode[INITIAL_STACK];
+        int n = 0;
+        Node[] stack = new Node[INITIAL_STACK];
+        AugmentedNode[] copies = new AugmentedNode[INITIAL_STACK];
+        int top = 0;
+        tree.root = new AugmentedNode(root.d);
+        stack[top] = root;
+        copies[top++] = tree.root;
+        while (top > 0) {
+            Node node = stack[--top];
+            AugmentedNode copy = copies[top];
+            stack[top] = null;
+            copies[top] = null;
+            if (n == created.length) created = Arrays.copyOf(created, n * 2);
+            created[n++] = copy;
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                copies = Arrays.copyOf(copies, copies.length * 2);
+            }
+            if (node.right != null) {
+                copy.right = new AugmentedNode(node.right.d);
+                copy.right.parent = copy;
+                stack[top] = node.right;
+                copies[top++] = copy.right;
+            }
+            if (node.left != null) {
+                copy.left = new AugmentedNode(node.left.d);
+                copy.left.parent = copy;
+                stack[top] = node.left;
+                copies[top++] = copy.left;
+            }
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            created[i].recount();
+        }
+        return tree;
+    }
+
+    public AugmentedNode getRoot() {
+        return root;
+    }
+
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public long sum() {
+        return root == null ? 0 : root.sum;
+    }
+
+    public int max() {
+        if (root == null) throw new NoSuchElementException("Дерево пусто");
+        return root.max;
+    }
+
+    public int min() {
+        if (root == null) throw new NoSuchElementException("Дерево пусто");
+        return root.min;
+    }
+
+    public TreeStats stats() {
+        return root == null ? TreeStats.EMPTY : root.stats();
+    }
+
+    // Сводка по узлам с позициями [from, to) в симметричном порядке
+    public TreeStats stats(int from, int to) {
+        if (from < 0 || to > size() || from > to) {
+            throw new IndexOutOfBoundsException("[" + from + ", " + to + ") вне [0, " + size() + ")");
+        }
+        if (from == to) return TreeStats.EMPTY;
+
+        // Спускаемся до узла, на котором отрезок расходится по двум поддеревьям
+        AugmentedNode split = root;
+        int offset = 0;
+        int pos;
+        while (true) {
+            pos = offset + size(split.left);
+            if (to <= pos) {
+                split = split.left;
+            } else if (from > pos) {
+                offset = pos + 1;
+                split = split.right;
+            } else {
+                break;
+            }
+        }
+
+        long count = 1;
+        long sum = split.d;
+        int min = split.d;
+        int max = split.d;
+
+        // Левая граница: в левом поддереве берём всё, что не раньше from
+        int off = offset;
+        for (AugmentedNode node = split.left; node != null; ) {
+            int p = off + size(node.left);
+            if (from <= p) {
+                count++;
+                sum += node.d;
+                if (node.d < min) min = node.d;
+                if (node.d > max) max = node.d;
+                AugmentedNode r = node.right;
+                if (r != null) {
+                    count += r.size;
+                    sum += r.sum;
+                    if (r.min < min) min = r.min;
+                    if (r.max > max) max = r.max;
+                }
+                node = node.left;
+            } else {
+                off = p + 1;
+                node = node.right;
+            }
+        }
+
+        // Правая граница: в правом поддереве берём всё, что раньше to
+        off = pos + 1;
+        for (AugmentedNode node = split.right; node != null; ) {
+            int p = off + size(node.left);
+            if (p < to) {
+                count++;
+                sum += node.d;
+                if (node.d < min) min = node.d;
+                if (node.d > max) max = node.d;
+                AugmentedNode l = node.left;
+                if (l != null) {
+                    count += l.size;
+                    sum += l.sum;
+                    if (l.min < min) min = l.min;
+                    if (l.max > max) max = l.max;
+                }
+                off = p + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return new TreeStats(count, sum, min, max);
+    }
+
+    // Делает value корнем пустого дерева
+    public AugmentedNode addRoot(int value) {
+        if (root != null) throw new IllegalStateException("У дерева уже есть корень");
+        root = new AugmentedNode(value);
+        return root;
+    }
+
+    public AugmentedNode addLeft(AugmentedNode parent, int value) {
+        checkOwned(parent);
+        if (parent.left != null) throw new IllegalStateException("Левый ребёнок уже есть");
+        AugmentedNode node = new AugmentedNode(value);
+        node.parent = parent;
+        parent.left = node;
+        recountUp(parent);
+        return node;
+    }
+
+    public AugmentedNode addRight(AugmentedNode parent, int value) {
+        checkOwned(parent);
+        if (parent.right != null) throw new IllegalStateException("Правый ребёнок уже есть");
+        AugmentedNode node = new AugmentedNode(value);
+        node.parent = parent;
+        parent.right = node;
+        recountUp(parent);
+        return node;
+    }
+
+    public void setValue(AugmentedNode node, int value) {
+        checkOwned(node);
+        node.d = value;
+        recountUp(node);
+    }
+
+    // Удаляет значение узла, сохраняя симметричный порядок остальных.
+    // Узел с двумя детьми получает значение преемника, а удаляется узел преемника,
+    // поэтому ссылка на этот узел остаётся в дереве, а на преемника - нет.
+    public void remove(AugmentedNode node) {
+        checkOwned(node);
+        if (node.left != null && node.right != null) {
+            AugmentedNode successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.d = successor.d;
+            node = successor;
+        }
+
+        AugmentedNode child = node.left != null ? node.left : node.right;
+        AugmentedNode parent = node.parent;
+        if (child != null) child.parent = parent;
+        if (parent == null) root = child;
+        else if (parent.left == node) parent.left = child;
+        else parent.right = child;
+        node.parent = null;
+        node.left = null;
+        node.right = null;
+        recountUp(parent);
+    }
+
+    private static int size(AugmentedNode node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void recountUp(AugmentedNode node) {
+        for (; node != null; node = node.parent) {
+            node.recount();
+        }
+    }
+
+    // Проверка стоит O(высоты), как и последующий пересчёт
+    private void checkOwned(AugmentedNode node) {
+        AugmentedNode top = node;
+        while (top.parent != null) {
+            top = top.parent;
+        }
+        if (top != root) throw new IllegalArgumentException("Узел не принадлежит этому дереву");
+    }
+}
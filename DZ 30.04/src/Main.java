@@ -8,5 +8,6 @@ public class Main {
         Traversal traversal = new Traversal(r);
         traversal.order(r);
         traversal.getMaxNumb();
+        System.out.println(Traversal.aggregate(r));
     }
 }
\ No newline at end of file
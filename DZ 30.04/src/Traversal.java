@@ -1,4 +1,14 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+
 public class Traversal {
+    // Начальная ёмкость стеков и очередей обхода (степень двойки)
+    private static final int INITIAL_STACK = 64;
+
     static int maxNumb;
     Node root;
 
@@ -7,18 +17,207 @@ public class Traversal {
         maxNumb = root.d;
     }
     public static void order(Node root) {
-        if(root == null) {
-            return;
-        }
-        if(maxNumb < root.d) {
-            maxNumb = root.d;
-        }
-        System.out.print(root.d);
-        order(root.left);
-        order(root.right);//найти макс элемент в дереве(ДЗ)
+        // Прямой обход с явным стеком: глубокая цепочка не переполняет стек вызовов
+        preOrder(root, d -> {
+            if(maxNumb < d) {
+                maxNumb = d;
+            }
+            System.out.print(d);
+        });//найти макс элемент в дереве(ДЗ)
     }
 
     public static void getMaxNumb() {
         System.out.println("\n" + maxNumb);;
     }
+
+    // Обходы ниже не рекурсивны: стек узлов - массив, растущий вдвое,
+    // так что память зависит от высоты дерева, а не от глубины стека потока
+
+    // Корень, левое поддерево, правое
+    public static void preOrder(Node root, IntConsumer visitor) {
+        if (root == null) return;
+        Node[] stack = new Node[INITIAL_STACK];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            Node node = stack[--top];
+            visitor.accept(node.d);
+            if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            if (node.right != null) stack[top++] = node.right;
+            if (node.left != null) stack[top++] = node.left;
+        }
+    }
+
+    // Левое поддерево, корень, правое
+    public static void inOrder(Node root, IntConsumer visitor) {
+        Node[] stack = new Node[INITIAL_STACK];
+        int top = 0;
+        Node node = root;
+        while (node != null || top > 0) {
+            while (node != null) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = node;
+                node = node.left;
+            }
+            node = stack[--top];
+            visitor.accept(node.d);
+            node = node.right;
+        }
+    }
+
+    // Левое поддерево, правое, корень
+    public static void postOrder(Node root, IntConsumer visitor) {
+        Node[] stack = new Node[INITIAL_STACK];
+        int top = 0;
+        Node node = root;
+        // Последний посещённый узел: по нему видно, что правое поддерево уже пройдено
+        Node last = null;
+        while (node != null || top > 0) {
+            while (node != null) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = node;
+                node = node.left;
+            }
+            Node peek = stack[top - 1];
+            if (peek.right != null && peek.right != last) {
+                node = peek.right;
+            } else {
+                visitor.accept(peek.d);
+                last = peek;
+                stack[--top] = null;
+            }
+        }
+    }
+
+    // По уровням, слева направо; очередь - кольцевой массив
+    public static void levelOrder(Node root, IntConsumer visitor) {
+        if (root == null) return;
+        Node[] queue = new Node[INITIAL_STACK];
+        int head = 0;
+        int count = 1;
+        queue[0] = root;
+        while (count > 0) {
+            Node node = queue[head];
+            queue[head] = null;
+            head = (head + 1) & (queue.length - 1);
+            count--;
+            visitor.accept(node.d);
+            if (count + 2 > queue.length) {
+                Node[] grown = new Node[queue.length * 2];
+                for (int i = 0; i < count; i++) {
+                    grown[i] = queue[(head + i) & (queue.length - 1)];
+                }
+                queue = grown;
+                head = 0;
+            }
+            if (node.left != null) queue[(head + count++) & (queue.length - 1)] = node.left;
+            if (node.right != null) queue[(head + count++) & (queue.length - 1)] = node.right;
+        }
+    }
+
+    // Симметричный обход Морриса: O(1) дополнительной памяти. Временно прошивает
+    // правые ссылки к преемнику и снимает их по ходу обхода, так что к концу дерево
+    // прежнее. Во время обхода дерево нельзя читать из других потоков, а visitor
+    // не должен его трогать; если visitor бросит исключение, прошивки останутся.
+    public static void morrisInOrder(Node root, IntConsumer visitor) {
+        Node node = root;
+        while (node != null) {
+            if (node.left == null) {
+                visitor.accept(node.d);
+                node = node.right;
+                continue;
+            }
+            Node pred = node.left;
+            while (pred.right != null && pred.right != node) {
+                pred = pred.right;
+            }
+            if (pred.right == null) {
+                pred.right = node;
+                node = node.left;
+            } else {
+                pred.right = null;
+                visitor.accept(node.d);
+                node = node.right;
+            }
+        }
+    }
+
+    // Число узлов, сумма, минимум и максимум за один параллельный проход, без печати
+    public static TreeStats aggregate(Node root) {
+        return aggregate(root, ForkJoinPool.commonPool());
+    }
+
+    public static TreeStats aggregate(Node root, ForkJoinPool pool) {
+        if (root == null) return TreeStats.EMPTY;
+        return pool.invoke(new AggregateTask(root));
+    }
+
+    // Задача обходит своё поддерево с явным стеком. Размеры поддеревьев заранее
+    // неизвестны, поэтому делимся работой по спросу: если в очереди потока мало задач,
+    // ближайшее к корню отложенное поддерево отдаётся отдельной задачей.
+    @SuppressWarnings("serial")
+    private static final class AggregateTask extends RecursiveTask<TreeStats> {
+        // Столько узлов обходим между проверками очереди
+        private static final int CHECK_INTERVAL = 256;
+        // Сколько лишних задач держим в очереди для воровства другими потоками
+        private static final int SURPLUS_LIMIT = 2;
+
+        private final Node root;
+
+        AggregateTask(Node root) {
+            this.root = root;
+        }
+
+        @Override
+        protected TreeStats compute() {
+            // Отложенные поддеревья лежат в stack[bottom, top); у дна - ближайшие к корню
+            Node[] stack = new Node[INITIAL_STACK];
+            int bottom = 0;
+            int top = 0;
+            stack[top++] = root;
+
+            List<AggregateTask> forked = new ArrayList<>();
+            long count = 0;
+            long sum = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int untilCheck = 0;
+            while (top > bottom) {
+                if (--untilCheck <= 0 && top - bottom > 1) {
+                    untilCheck = CHECK_INTERVAL;
+                    if (getSurplusQueuedTaskCount() < SURPLUS_LIMIT) {
+                        AggregateTask task = new AggregateTask(stack[bottom]);
+                        stack[bottom++] = null;
+                        task.fork();
+                        forked.add(task);
+                        continue;
+                    }
+                }
+
+                Node node = stack[--top];
+                count++;
+                sum += node.d;
+                if (node.d < min) min = node.d;
+                if (node.d > max) max = node.d;
+
+                if (top + 2 > stack.length) {
+                    // Сдвигаем отложенные узлы к началу, при нехватке места - в массив вдвое больше
+                    int n = top - bottom;
+                    Node[] grown = new Node[n + 2 > stack.length / 2 ? stack.length * 2 : stack.length];
+                    System.arraycopy(stack, bottom, grown, 0, n);
+                    stack = grown;
+                    bottom = 0;
+                    top = n;
+                }
+                if (node.right != null) stack[top++] = node.right;
+                if (node.left != null) stack[top++] = node.left;
+            }
+
+            TreeStats stats = new TreeStats(count, sum, min, max);
+            for (AggregateTask task : forked) {
+                stats = stats.combine(task.join());
+            }
+            return stats;
+        }
+    }
 }
@@ -0,0 +1,47 @@
+// Сводка по значениям дерева: число узлов, сумма, минимум и максимум.
+// У пустого дерева min = Integer.MAX_VALUE, max = Integer.MIN_VALUE.
+public final class TreeStats {
+    public static final TreeStats EMPTY = new TreeStats(0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE);
+
+    private final long count;
+    private final long sum;
+    private final int min;
+    private final int max;
+
+    public TreeStats(long count, long sum, int min, int max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public TreeStats combine(TreeStats other) {
+        return new TreeStats(count + other.count, sum + other.sum,
+                Math.min(min, other.min), Math.max(max, other.max));
+    }
+
+    @Override
+    public String toString() {
+        return "TreeStats{count=" + count + ", sum=" + sum + ", min=" + min + ", max=" + max + '}';
+    }
+}
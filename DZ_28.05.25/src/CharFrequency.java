@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Частоты символов за один проход. Символы BMP считаются в таблице int[65536],
+// дополнительные (суррогатные пары) - в открытой адресации на примитивных массивах.
+// Порядок первого появления хранится отдельно. Счётчики int: один символ
+// может встретиться не больше Integer.MAX_VALUE раз. Не потокобезопасно.
+public class CharFrequency {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int[] bmp = new int[Character.MAX_VALUE + 1];
+
+    // Дополнительные символы: ключ 0 - пустая ячейка (такие коды не меньше 0x10000)
+    private int[] supplementaryKeys = new int[16];
+    private int[] supplementaryCounts = new int[16];
+    private int supplementarySize;
+
+    // Коды символов в порядке первого появления
+    private int[] order = new int[64];
+    private int distinct;
+
+    // Старшая половина суррогатной пары, чья младшая ещё не пришла
+    private char pendingHigh;
+
+    public static CharFrequency of(CharSequence text) {
+        CharFrequency frequency = new CharFrequency();
+        frequency.add(text);
+        return frequency;
+    }
+
+    // Читает файл кусками и декодирует их через CharsetDecoder;
+    // неверные байты считаются как символ замены U+FFFD
+    public static CharFrequency ofFile(Path path, Charset charset) throws IOException {
+        CharFrequency frequency = new CharFrequency();
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer out = CharBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean endOfInput = false;
+            while (true) {
+                if (!endOfInput && channel.read(in) < 0) endOfInput = true;
+                in.flip();
+                CoderResult result = decoder.decode(in, out, endOfInput);
+                in.compact();
+                frequency.drain(out);
+                if (endOfInput && result.isUnderflow()) break;
+            }
+            while (decoder.flush(out).isOverflow()) {
+                frequency.drain(out);
+            }
+            frequency.drain(out);
+        }
+        frequency.finish();
+        return frequency;
+    }
+
+    // Текст считается законченным: оборванная суррогатная пара в конце учитывается как есть
+    public void add(CharSequence text) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            accept(text.charAt(i));
+        }
+        finish();
+    }
+
+    // Читает reader до конца; закрывать его - дело вызывающего
+    public void add(Reader reader) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                accept(buffer[i]);
+            }
+        }
+        finish();
+    }
+
+    public int count(int codePoint) {
+        if (codePoint <= Character.MAX_VALUE) return codePoint < 0 ? 0 : bmp[codePoint];
+        int slot = findSlot(codePoint);
+        return supplementaryKeys[slot] == 0 ? 0 : supplementaryCounts[slot];
+    }
+
+    // Число различных символов
+    public int distinct() {
+        return distinct;
+    }
+
+    // Различные символы в порядке первого появления
+    public int[] codePoints() {
+        return Arrays.copyOf(order, distinct);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < distinct; i++) {
+            sb.appendCodePoint(order[i]).append(": ").append(count(order[i])).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private void drain(CharBuffer out) {
+        out.flip();
+        char[] chars = out.array();
+        for (int i = out.arrayOffset() + out.position(), end = out.arrayOffset() + out.limit(); i < end; i++) {
+            accept(chars[i]);
+        }
+        out.clear();
+    }
+
+    private void accept(char c) {
+        if (pendingHigh != 0) {
+            char high = pendingHigh;
+            pendingHigh = 0;
+            if (Character.isLowSurrogate(c)) {
+                addSupplementary(Character.toCodePoint(high, c));
+                return;
+            }
+            addBmp(high);
+        }
+        if (Character.isHighSurrogate(c)) {
+            pendingHigh = c;
+        } else {
+            addBmp(c);
+        }
+    }
+
+    private void finish() {
+        if (pendingHigh != 0) {
+            addBmp(pendingHigh);
+            pendingHigh = 0;
+        }
+    }
+
+    private void addBmp(char c) {
+        if (bmp[c]++ == 0) remember(c);
+    }
+
+    private void addSupplementary(int codePoint) {
+        int slot = findSlot(codePoint);
+        if (supplementaryKeys[slot] != 0) {
+            supplementaryCounts[slot]++;
+            return;
+        }
+        supplementaryKeys[slot] = codePoint;
+        supplementaryCounts[slot] = 1;
+        remember(codePoint);
+        // Заполняем таблицу не больше чем наполовину
+        if (++supplementarySize * 2 > supplementaryKeys.length) growSupplementary();
+    }
+
+    // Ячейка с ключом codePoint или пустая ячейка, куда его положить
+    private int findSlot(int codePoint) {
+        int mask = supplementaryKeys.length - 1;
+        int hash = codePoint * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (supplementaryKeys[slot] != 0 && supplementaryKeys[slot] != codePoint) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void growSupplementary() {
+        int[] oldKeys = supplementaryKeys;
+        int[] oldCounts = supplementaryCounts;
+        supplementaryKeys = new int[oldKeys.length * 2];
+        supplementaryCounts = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = findSlot(oldKeys[i]);
+                supplementaryKeys[slot] = oldKeys[i];
+                supplementaryCounts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private void remember(int codePoint) {
+        if (distinct == order.length) order = Arrays.copyOf(order, distinct * 2);
+        order[distinct++] = codePoint;
+    }
+}
@@ -1,35 +1,17 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
 public class Main {
-    public static void main(String[] args) {
-        String word = "aapple ,";
-        value(word,getWordChars(word));
-    }
-
-    public static void value(String word, char[] mas) {
-        int[] res = new int[mas.length];
-        for(int i = 0; i < mas.length; i++) {
-            for(int j = 0; j < word.length(); j++) {
-                if(mas[i] == word.charAt(j))  {
-                    res[i]++;
-                }
-            }
-            System.out.println(mas[i] + ": " + res[i]);
-        }
-    }
-
-    public static char[] getWordChars(String word) {
-        List<Character> temp = new ArrayList<>();
-        for(int i = 0; i < word.length(); i++) {
-            if(!temp.contains(word.charAt(i))) {
-                temp.add(word.charAt(i));
-            }
-        }
-        char[] res = new char[temp.size()];
-        for(int i = 0; i < temp.size(); i++) {
-            res[i] = temp.get(i);
+    // Без аргументов считает символы в слове, с аргументом - в файле UTF-8
+    public static void main(String[] args) throws IOException {
+        CharFrequency frequency;
+        if (args.length > 0) {
+            frequency = CharFrequency.ofFile(Path.of(args[0]), StandardCharsets.UTF_8);
+        } else {
+            String word = "aapple ,";
+            frequency = CharFrequency.of(word);
         }
-        return res;
+        System.out.print(frequency);
     }
-}
\ No newline at end of file
+}
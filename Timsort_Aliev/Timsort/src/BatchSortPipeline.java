@@ -0,0 +1,175 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+// Конвейерная сортировка набора массивов из файла тестовых данных.
+// Читатель разбирает массивы, пул потоков их сортирует, писатель выводит
+// отсортированные массивы и статистику по каждому в исходном порядке.
+// Стадии связаны ограниченными очередями, а число массивов "в полёте"
+// (от чтения до записи) ограничено, так что память не растёт с размером файла.
+public class BatchSortPipeline {
+
+    private final int workers;
+    private final int inFlight;
+
+    private static final class Task {
+        final long seq;
+        final int[] arr;
+        final SortStats stats = new SortStats();
+        long nanos;
+
+        Task(long seq, int[] arr) {
+            this.seq = seq;
+            this.arr = arr;
+        }
+    }
+
+    // Маркер конца входа; seq - общее число массивов
+    private static Task end(long count) {
+        return new Task(count, null);
+    }
+
+    public BatchSortPipeline(int workers, int inFlight) {
+        if (workers < 1 || inFlight < 1) {
+            throw new IllegalArgumentException("workers и inFlight должны быть положительными");
+        }
+        this.workers = workers;
+        this.inFlight = inFlight;
+    }
+
+    // Сортирует все массивы input в output (в формате входа); statsOutput может быть null.
+    // Возвращает число обработанных массивов.
+    public long run(Path input, Path output, Path statsOutput) throws IOException {
+        BlockingQueue<Task> toSort = new ArrayBlockingQueue<>(inFlight + 1);
+        BlockingQueue<Task> sorted = new ArrayBlockingQueue<>(inFlight + 1);
+        Semaphore window = new Semaphore(inFlight);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers + 2);
+        ExecutorCompletionService<Long> stages = new ExecutorCompletionService<>(pool);
+        try (TestData.ArrayReader reader = TestData.openReader(input);
+             TestData.ArrayWriter writer = TestData.openWriterLike(reader, output);
+             BufferedWriter statsWriter = statsOutput == null ? null : Files.newBufferedWriter(statsOutput)) {
+
+            stages.submit(() -> read(reader, toSort, sorted, window));
+            for (int i = 0; i < workers; i++) {
+                stages.submit(() -> sort(toSort, sorted));
+            }
+            Future<Long> writing = stages.submit(() -> write(sorted, writer, statsWriter, window));
+
+            // Ошибка любой стадии останавливает остальные, иначе они повиснут на очередях
+            for (int i = 0; i < workers + 2; i++) {
+                Future<Long> done = stages.take();
+                try {
+                    done.get();
+                } catch (ExecutionException e) {
+                    pool.shutdownNow();
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    throw new IOException("Ошибка конвейера сортировки", cause);
+                }
+            }
+            return writing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Конвейер прерван", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Ошибка конвейера сортировки", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private long read(TestData.ArrayReader reader, BlockingQueue<Task> toSort, BlockingQueue<Task> sorted,
+                      Semaphore window) throws IOException, InterruptedException {
+        long seq = 0;
+        int[] arr;
+        while (true) {
+            window.acquire();
+            arr = reader.next();
+            if (arr == null) break;
+            toSort.put(new Task(seq++, arr));
+        }
+        window.release();
+        toSort.put(end(seq));
+        sorted.put(end(seq));
+        return seq;
+    }
+
+    private long sort(BlockingQueue<Task> toSort, BlockingQueue<Task> sorted) throws InterruptedException {
+        long count = 0;
+        while (true) {
+            Task task = toSort.take();
+            if (task.arr == null) {
+                toSort.put(task); // маркер нужен остальным сортировщикам
+                return count;
+            }
+            long start = System.nanoTime();
+            Timsort.sort(task.arr, task.stats);
+            task.nanos = System.nanoTime() - start;
+            sorted.put(task);
+            count++;
+        }
+    }
+
+    // Готовые массивы приходят в произвольном порядке и ждут своей очереди
+    // в кольце размера inFlight: больше inFlight массивов одновременно не бывает.
+    private long write(BlockingQueue<Task> sorted, TestData.ArrayWriter writer, BufferedWriter statsWriter,
+                       Semaphore window) throws IOException, InterruptedException {
+        Task[] ring = new Task[inFlight];
+        long next = 0;
+        long total = -1;
+        if (statsWriter != null) {
+            statsWriter.write("index,size,strategy,time_ns,comparisons,moves,runs,merges");
+            statsWriter.newLine();
+        }
+        while (total < 0 || next < total) {
+            Task task = sorted.take();
+            if (task.arr == null) {
+                total = task.seq;
+                continue;
+            }
+            ring[(int) (task.seq % inFlight)] = task;
+
+            int slot;
+            while ((task = ring[slot = (int) (next % inFlight)]) != null && task.seq == next) {
+                ring[slot] = null;
+                writer.writeArray(task.arr, 0, task.arr.length);
+                if (statsWriter != null) {
+                    SortStats s = task.stats;
+                    statsWriter.write(task.seq + "," + task.arr.length + "," + s.getStrategy() + "," + task.nanos + ","
+                            + s.getComparisons() + "," + s.getMoves() + "," + s.getRuns() + "," + s.getMerges());
+                    statsWriter.newLine();
+                }
+                window.release();
+                next++;
+            }
+        }
+        return next;
+    }
+
+    // java BatchSortPipeline <вход> <выход> [статистика.csv] [потоки] [массивов в полёте]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Использование: BatchSortPipeline <вход> <выход> [статистика.csv] [потоки] [в полёте]");
+            return;
+        }
+        Path stats = args.length > 2 ? Paths.get(args[2]) : null;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int inFlight = args.length > 4 ? Integer.parseInt(args[4]) : threads * 4;
+
+        long start = System.nanoTime();
+        long count = new BatchSortPipeline(threads, inFlight).run(Paths.get(args[0]), Paths.get(args[1]), stats);
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Отсортировано массивов: " + count + " за " + ms + " мс");
+    }
+}
@@ -0,0 +1,376 @@
+import java.util.Comparator;
+
+// Устойчивый Timsort для T[] с компаратором: тот же алгоритм, что и Timsort
+// для int[], сравнения идут через Comparator. Проход по сериям и решения
+// о слияниях общие - RunMerger и RunStack.
+final class ComparatorTimsort {
+
+    private ComparatorTimsort() {
+    }
+
+    // Сортировка участка arr[lo, hi)
+    static <T> void sort(T[] arr, int lo, int hi, Comparator<? super T> c) {
+        if (hi - lo < 2) return;
+        new MergeState<>(arr, hi - lo, c).sort(lo, hi);
+    }
+
+    // Длина серии, начинающейся в lo. Строго убывающая серия разворачивается
+    // (нестрогую развернуть нельзя - сломается устойчивость).
+    private static <T> int countRunAndMakeAscending(T[] arr, int lo, int hi, Comparator<? super T> c) {
+        int runHi = lo + 1;
+        if (runHi == hi) return 1;
+
+        if (c.compare(arr[runHi++], arr[lo]) < 0) {
+            while (runHi < hi && c.compare(arr[runHi], arr[runHi - 1]) < 0) {
+                runHi++;
+            }
+            reverse(arr, lo, runHi - 1);
+        } else {
+            while (runHi < hi && c.compare(arr[runHi], arr[runHi - 1]) >= 0) {
+                runHi++;
+            }
+        }
+
+        return runHi - lo;
+    }
+
+    private static <T> void reverse(T[] arr, int start, int end) {
+        while (start < end) {
+            T temp = arr[start];
+            arr[start] = arr[end];
+            arr[end] = temp;
+            start++;
+            end--;
+        }
+    }
+
+    // Сортировка вставками arr[lo, hi), где arr[lo, start) уже отсортирован.
+    // Место вставки ищется бинарным поиском, сдвиг - одним arraycopy.
+    private static <T> void binaryInsertionSort(T[] arr, int lo, int hi, int start, Comparator<? super T> c) {
+        if (start == lo) start++;
+        for (; start < hi; start++) {
+            T pivot = arr[start];
+            int left = lo;
+            int right = start;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (c.compare(pivot, arr[mid]) < 0) {
+                    right = mid;
+                } else {
+                    left = mid + 1;
+                }
+            }
+
+            int count = start - left;
+            System.arraycopy(arr, left, arr, left + 1, count);
+            arr[left] = pivot;
+        }
+    }
+
+    // Слияние соседних серий [left, mid) и [mid, right) с галопом.
+    // Во временный буфер копируется только меньшая из двух серий.
+    private static <T> void merge(T[] arr, int left, int mid, int right, MergeState<T> ms) {
+        if (mid >= right) return; // Нечего сливать
+        Comparator<? super T> c = ms.c;
+
+        // Элементы левой серии, не большие arr[mid], уже стоят на своих местах
+        int k = gallopRight(arr[mid], arr, left, mid - left, 0, c);
+        left += k;
+        if (left == mid) return;
+
+        // Элементы правой серии, не меньшие arr[mid - 1], тоже на месте
+        int len2 = gallopLeft(arr[mid - 1], arr, mid, right - mid, right - mid - 1, c);
+        if (len2 == 0) return;
+
+        int len1 = mid - left;
+        if (len1 <= len2) {
+            mergeLo(arr, left, len1, mid, len2, ms);
+        } else {
+            mergeHi(arr, left, len1, mid, len2, ms);
+        }
+    }
+
+    // Левая серия меньше: копируем её в буфер и заполняем массив слева направо
+    private static <T> void mergeLo(T[] arr, int base1, int len1, int base2, int len2, MergeState<T> ms) {
+        T[] tmp = ms.ensureCapacity(len1);
+        Comparator<? super T> c = ms.c;
+        System.arraycopy(arr, base1, tmp, 0, len1);
+
+        int cursor1 = 0;
+        int cursor2 = base2;
+        int dest = base1;
+
+        arr[dest++] = arr[cursor2++];
+        if (--len2 == 0) {
+            System.arraycopy(tmp, cursor1, arr, dest, len1);
+            return;
+        }
+        if (len1 == 1) {
+            System.arraycopy(arr, cursor2, arr, dest, len2);
+            arr[dest + len2] = tmp[cursor1];
+            return;
+        }
+
+        int minGallop = ms.minGallop;
+        outer:
+        while (true) {
+            int count1 = 0; // сколько раз подряд выиграла левая серия
+            int count2 = 0; // сколько раз подряд выиграла правая серия
+
+            // Обычное поэлементное слияние, пока ни одна серия не побеждает подряд
+            do {
+                if (c.compare(arr[cursor2], tmp[cursor1]) < 0) {
+                    arr[dest++] = arr[cursor2++];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 0) break outer;
+                } else {
+                    arr[dest++] = tmp[cursor1++];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 1) break outer;
+                }
+            } while ((count1 | count2) < minGallop);
+
+            // Режим галопа: ищем длину выигрышного участка экспоненциальным поиском
+            do {
+                count1 = gallopRight(arr[cursor2], tmp, cursor1, len1, 0, c);
+                if (count1 != 0) {
+                    System.arraycopy(tmp, cursor1, arr, dest, count1);
+                    dest += count1;
+                    cursor1 += count1;
+                    len1 -= count1;
+                    if (len1 <= 1) break outer;
+                }
+                arr[dest++] = arr[cursor2++];
+                if (--len2 == 0) break outer;
+
+                count2 = gallopLeft(tmp[cursor1], arr, cursor2, len2, 0, c);
+                if (count2 != 0) {
+                    System.arraycopy(arr, cursor2, arr, dest, count2);
+                    dest += count2;
+                    cursor2 += count2;
+                    len2 -= count2;
+                    if (len2 == 0) break outer;
+                }
+                arr[dest++] = tmp[cursor1++];
+                if (--len1 == 1) break outer;
+                minGallop--;
+            } while (count1 >= Timsort.MIN_GALLOP | count2 >= Timsort.MIN_GALLOP);
+            minGallop = RunMerger.afterGallop(minGallop);
+        }
+        ms.storeMinGallop(minGallop);
+
+        if (len1 == 1) {
+            System.arraycopy(arr, cursor2, arr, dest, len2);
+            arr[dest + len2] = tmp[cursor1];
+        } else if (len1 == 0) {
+            // С корректным компаратором серия не может опустеть раньше времени
+            throw new IllegalArgumentException("Comparison method violates its general contract!");
+        } else {
+            System.arraycopy(tmp, cursor1, arr, dest, len1);
+        }
+    }
+
+    // Правая серия меньше: копируем её в буфер и заполняем массив справа налево
+    private static <T> void mergeHi(T[] arr, int base1, int len1, int base2, int len2, MergeState<T> ms) {
+        T[] tmp = ms.ensureCapacity(len2);
+        Comparator<? super T> c = ms.c;
+        System.arraycopy(arr, base2, tmp, 0, len2);
+
+        int cursor1 = base1 + len1 - 1;
+        int cursor2 = len2 - 1;
+        int dest = base2 + len2 - 1;
+
+        arr[dest--] = arr[cursor1--];
+        if (--len1 == 0) {
+            System.arraycopy(tmp, 0, arr, dest - (len2 - 1), len2);
+            return;
+        }
+        if (len2 == 1) {
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(arr, cursor1 + 1, arr, dest + 1, len1);
+            arr[dest] = tmp[cursor2];
+            return;
+        }
+
+        int minGallop = ms.minGallop;
+        outer:
+        while (true) {
+            int count1 = 0;
+            int count2 = 0;
+
+            do {
+                if (c.compare(tmp[cursor2], arr[cursor1]) < 0) {
+                    arr[dest--] = arr[cursor1--];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 0) break outer;
+                } else {
+                    arr[dest--] = tmp[cursor2--];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 1) break outer;
+                }
+            } while ((count1 | count2) < minGallop);
+
+            do {
+                count1 = len1 - gallopRight(tmp[cursor2], arr, base1, len1, len1 - 1, c);
+                if (count1 != 0) {
+                    dest -= count1;
+                    cursor1 -= count1;
+                    len1 -= count1;
+                    System.arraycopy(arr, cursor1 + 1, arr, dest + 1, count1);
+                    if (len1 == 0) break outer;
+                }
+                arr[dest--] = tmp[cursor2--];
+                if (--len2 == 1) break outer;
+
+                count2 = len2 - gallopLeft(arr[cursor1], tmp, 0, len2, len2 - 1, c);
+                if (count2 != 0) {
+                    dest -= count2;
+                    cursor2 -= count2;
+                    len2 -= count2;
+                    System.arraycopy(tmp, cursor2 + 1, arr, dest + 1, count2);
+                    if (len2 <= 1) break outer;
+                }
+                arr[dest--] = arr[cursor1--];
+                if (--len1 == 0) break outer;
+                minGallop--;
+            } while (count1 >= Timsort.MIN_GALLOP | count2 >= Timsort.MIN_GALLOP);
+            minGallop = RunMerger.afterGallop(minGallop);
+        }
+        ms.storeMinGallop(minGallop);
+
+        if (len2 == 1) {
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(arr, cursor1 + 1, arr, dest + 1, len1);
+            arr[dest] = tmp[cursor2];
+        } else if (len2 == 0) {
+            throw new IllegalArgumentException("Comparison method violates its general contract!");
+        } else {
+            System.arraycopy(tmp, 0, arr, dest - (len2 - 1), len2);
+        }
+    }
+
+    // Позиция вставки key в отсортированный участок a[base, base + len):
+    // левее всех равных ему элементов. Поиск начинается с a[base + hint].
+    private static <T> int gallopLeft(T key, T[] a, int base, int len, int hint, Comparator<? super T> c) {
+        int lastOfs = 0;
+        int ofs = 1;
+        if (c.compare(key, a[base + hint]) > 0) {
+            // Галоп вправо
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && c.compare(key, a[base + hint + ofs]) > 0) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs; // переполнение
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            lastOfs += hint;
+            ofs += hint;
+        } else {
+            // Галоп влево
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && c.compare(key, a[base + hint - ofs]) <= 0) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            int tmp = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - tmp;
+        }
+
+        // Бинарный поиск внутри найденного интервала (lastOfs, ofs]
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int m = lastOfs + ((ofs - lastOfs) >>> 1);
+            if (c.compare(key, a[base + m]) > 0) {
+                lastOfs = m + 1;
+            } else {
+                ofs = m;
+            }
+        }
+        return ofs;
+    }
+
+    // То же, что gallopLeft, но позиция правее всех равных key элементов
+    private static <T> int gallopRight(T key, T[] a, int base, int len, int hint, Comparator<? super T> c) {
+        int lastOfs = 0;
+        int ofs = 1;
+        if (c.compare(key, a[base + hint]) < 0) {
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && c.compare(key, a[base + hint - ofs]) < 0) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            int tmp = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - tmp;
+        } else {
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && c.compare(key, a[base + hint + ofs]) >= 0) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            lastOfs += hint;
+            ofs += hint;
+        }
+
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int m = lastOfs + ((ofs - lastOfs) >>> 1);
+            if (c.compare(key, a[base + m]) < 0) {
+                ofs = m;
+            } else {
+                lastOfs = m + 1;
+            }
+        }
+        return ofs;
+    }
+
+    // Состояние слияний одной сортировки: массив, компаратор и временный буфер;
+    // проход по сериям и порог галопа - в RunMerger
+    private static final class MergeState<T> extends RunMerger {
+        final T[] arr;
+        final Comparator<? super T> c;
+        T[] tmp;
+
+        MergeState(T[] arr, int n, Comparator<? super T> c) {
+            super(n);
+            this.arr = arr;
+            this.c = c;
+        }
+
+        @Override
+        int countRunAndMakeAscending(int lo, int hi) {
+            return ComparatorTimsort.countRunAndMakeAscending(arr, lo, hi, c);
+        }
+
+        @Override
+        void binaryInsertionSort(int lo, int hi, int start) {
+            ComparatorTimsort.binaryInsertionSort(arr, lo, hi, start, c);
+        }
+
+        @Override
+        void merge(int left, int mid, int right) {
+            ComparatorTimsort.merge(arr, left, mid, right, this);
+        }
+
+        @SuppressWarnings("unchecked")
+        T[] ensureCapacity(int minCapacity) {
+            if (tmp == null || tmp.length < minCapacity) {
+                tmp = (T[]) new Object[tmpLength(minCapacity)];
+            }
+            return tmp;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+// Timsort для double[]. Порядок как у Double.compare: -0.0 < 0.0, NaN в конце.
+// NaN убираются в хвост заранее, остаток сортируется обычными сравнениями,
+// после чего нули разных знаков расставляются по местам.
+final class DoubleTimsort {
+
+    private DoubleTimsort() {
+    }
+
+    static void sort(double[] arr, int lo, int hi) {
+        // Переносим NaN в конец участка
+        int end = hi;
+        while (end > lo && Double.isNaN(arr[end - 1])) {
+            end--;
+        }
+        for (int i = end - 1; i >= lo; i--) {
+            double d = arr[i];
+            if (d != d) {
+                arr[i] = arr[--end];
+                arr[end] = d;
+            }
+        }
+
+        sortNumbers(arr, lo, end);
+
+        // Для сравнений -0.0 == 0.0, так что нули лежат одним блоком вперемешку
+        int zeroStart = lowerBoundZero(arr, lo, end);
+        int negativeZeros = 0;
+        int i = zeroStart;
+        for (; i < end && arr[i] == 0.0d; i++) {
+            if (Double.doubleToRawLongBits(arr[i]) < 0) negativeZeros++;
+        }
+        for (int j = zeroStart; j < i; j++) {
+            arr[j] = j < zeroStart + negativeZeros ? -0.0d : 0.0d;
+        }
+    }
+
+    // Первый индекс в arr[lo, hi), где arr[i] >= 0.0
+    private static int lowerBoundZero(double[] arr, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (arr[mid] < 0.0d) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Сортировка участка arr[lo, hi) без NaN
+    private static void sortNumbers(double[] arr, int lo, int hi) {
+        if (hi - lo < 2) return;
+        new MergeState(arr, hi - lo).sort(lo, hi);
+    }
+
+    // Длина серии, начинающейся в lo. Строго убывающая серия разворачивается
+    // (нестрогую развернуть нельзя - сломается устойчивость).
+    private static int countRunAndMakeAscending(double[] arr, int lo, int hi) {
+        int runHi = lo + 1;
+        if (runHi == hi) return 1;
+
+        if (arr[runHi++] < arr[lo]) {
+            while (runHi < hi && arr[runHi] < arr[runHi - 1]) {
+                runHi++;
+            }
+            reverse(arr, lo, runHi - 1);
+        } else {
+            while (runHi < hi && arr[runHi] >= arr[runHi - 1]) {
+                runHi++;
+            }
+        }
+
+        return runHi - lo;
+    }
+
+    private static void reverse(double[] arr, int start, int end) {
+        while (start < end) {
+            double temp = arr[start];
+            arr[start] = arr[end];
+            arr[end] = temp;
+            start++;
+            end--;
+        }
+    }
+
+    // Сортировка вставками arr[lo, hi), где arr[lo, start) уже отсортирован.
+    // Место вставки ищется бинарным поиском, сдвиг - одним arraycopy.
+    private static void binaryInsertionSort(double[] arr, int lo, int hi, int start) {
+        if (start == lo) start++;
+        for (; start < hi; start++) {
+            double pivot = arr[start];
+            int left = lo;
+            int right = start;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (pivot < arr[mid]) {
+                    right = mid;
+                } else {
+                    left = mid + 1;
+                }
+            }
+
+            int count = start - left;
+            System.arraycopy(arr, left, arr, left + 1, count);
+            arr[left] = pivot;
+        }
+    }
+
+    // Слияние соседних серий [left, mid) и [mid, right) с галопом.
+    // Во временный буфер копируется только меньшая из двух серий.
+    private static void merge(double[] arr, int left, int mid, int right, MergeState ms) {
+        if (mid >= right) return; // Нечего сливать
+
+        // Элементы левой серии, не большие arr[mid], уже стоят на своих местах
+        int k = gallopRight(arr[mid], arr, left, mid - left, 0);
+        left += k;
+        if (left == mid) return;
+
+        // Элементы правой серии, не меньшие arr[mid - 1], тоже на месте
+        int len2 = gallopLeft(arr[mid - 1], arr, mid, right - mid, right - mid - 1);
+        if (len2 == 0) return;
+
+        int len1 = mid - left;
+        if (len1 <= len2) {
+            mergeLo(arr, left, len1, mid, len2, ms);
+        } else {
+            mergeHi(arr, left, len1, mid, len2, ms);
+        }
+    }
+
+    // Левая серия меньше: копируем её в буфер и заполняем массив слева направо
+    private static void mergeLo(double[] arr, int base1, int len1, int base2, int len2, MergeState ms) {
+        double[] tmp = ms.ensureCapacity(len1);
+        System.arraycopy(arr, base1, tmp, 0, len1);
+
+        int cursor1 = 0;
+        int cursor2 = base2;
+        int dest = base1;
+
+        arr[dest++] = arr[cursor2++];
+        if (--len2 == 0) {
+            System.arraycopy(tmp, cursor1, arr, dest, len1);
+            return;
+        }
+        if (len1 == 1) {
+            System.arraycopy(arr, cursor2, arr, dest, len2);
+            arr[dest + len2] = tmp[cursor1];
+            return;
+        }
+
+        int minGallop = ms.minGallop;
+        outer:
+        while (true) {
+            int count1 = 0; // сколько раз подряд выиграла левая серия
+            int count2 = 0; // сколько раз подряд выиграла правая серия
+
+            // Обычное поэлементное слияние, пока ни одна серия не побеждает подряд
+            do {
+                if (arr[cursor2] < tmp[cursor1]) {
+                    arr[dest++] = arr[cursor2++];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 0) break outer;
+                } else {
+                    arr[dest++] = tmp[cursor1++];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 1) break outer;
+                }
+            } while ((count1 | count2) < minGallop);
+
+            // Режим галопа: ищем длину выигрышного участка экспоненциальным поиском
+            do {
+                count1 = gallopRight(arr[cursor2], tmp, cursor1, len1, 0);
+                if (count1 != 0) {
+                    System.arraycopy(tmp, cursor1, arr, dest, count1);
+                    dest += count1;
+                    cursor1 += count1;
+                    len1 -= count1;
+                    if (len1 <= 1) break outer;
+                }
+                arr[dest++] = arr[cursor2++];
+                if (--len2 == 0) break outer;
+
+                count2 = gallopLeft(tmp[cursor1], arr, cursor2, len2, 0);
+                if (count2 != 0) {
+                    System.arraycopy(arr, cursor2, arr, dest, count2);
+                    dest += count2;
+                    cursor2 += count2;
+                    len2 -= count2;
+                    if (len2 == 0) break outer;
+                }
+                arr[dest++] = tmp[cursor1++];
+                if (--len1 == 1) break outer;
+                minGallop--;
+            } while (count1 >= Timsort.MIN_GALLOP | count2 >= Timsort.MIN_GALLOP);
+            minGallop = RunMerger.afterGallop(minGallop);
+        }
+        ms.storeMinGallop(minGallop);
+
+        if (len1 == 1) {
+            System.arraycopy(arr, cursor2, arr, dest, len2);
+            arr[dest + len2] = tmp[cursor1];
+        } else if (len1 > 0) {
+            System.arraycopy(tmp, cursor1, arr, dest, len1);
+        }
+    }
+
+    // Правая серия меньше: копируем её в буфер и заполняем массив справа налево
+    private static void mergeHi(double[] arr, int base1, int len1, int base2, int len2, MergeState ms) {
+        double[] tmp = ms.ensureCapacity(len2);
+        System.arraycopy(arr, base2, tmp, 0, len2);
+
+        int cursor1 = base1 + len1 - 1;
+        int cursor2 = len2 - 1;
+        int dest = base2 + len2 - 1;
+
+        arr[dest--] = arr[cursor1--];
+        if (--len1 == 0) {
+            System.arraycopy(tmp, 0, arr, dest - (len2 - 1), len2);
+            return;
+        }
+        if (len2 == 1) {
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(arr, cursor1 + 1, arr, dest + 1, len1);
+            arr[dest] = tmp[cursor2];
+            return;
+        }
+
+        int minGallop = ms.minGallop;
+        outer:
+        while (true) {
+            int count1 = 0;
+            int count2 = 0;
+
+            do {
+                if (tmp[cursor2] < arr[cursor1]) {
+                    arr[dest--] = arr[cursor1--];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 0) break outer;
+                } else {
+                    arr[dest--] = tmp[cursor2--];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 1) break outer;
+                }
+            } while ((count1 | count2) < minGallop);
+
+            do {
+                count1 = len1 - gallopRight(tmp[cursor2], arr, base1, len1, len1 - 1);
+                if (count1 != 0) {
+                    dest -= count1;
+                    cursor1 -= count1;
+                    len1 -= count1;
+                    System.arraycopy(arr, cursor1 + 1, arr, dest + 1, count1);
+                    if (len1 == 0) break outer;
+                }
+                arr[dest--] = tmp[cursor2--];
+                if (--len2 == 1) break outer;
+
+                count2 = len2 - gallopLeft(arr[cursor1], tmp, 0, len2, len2 - 1);
+                if (count2 != 0) {
+                    dest -= count2;
+                    cursor2 -= count2;
+                    len2 -= count2;
+                    System.arraycopy(tmp, cursor2 + 1, arr, dest + 1, count2);
+                    if (len2 <= 1) break outer;
+                }
+                arr[dest--] = arr[cursor1--];
+                if (--len1 == 0) break outer;
+                minGallop--;
+            } while (count1 >= Timsort.MIN_GALLOP | count2 >= Timsort.MIN_GALLOP);
+            minGallop = RunMerger.afterGallop(minGallop);
+        }
+        ms.storeMinGallop(minGallop);
+
+        if (len2 == 1) {
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(arr, cursor1 + 1, arr, dest + 1, len1);
+            arr[dest] = tmp[cursor2];
+        } else if (len2 > 0) {
+            System.arraycopy(tmp, 0, arr, dest - (len2 - 1), len2);
+        }
+    }
+
+    // Позиция вставки key в отсортированный участок a[base, base + len):
+    // левее всех равных ему элементов. Поиск начинается с a[base + hint].
+    private static int gallopLeft(double key, double[] a, int base, int len, int hint) {
+        int lastOfs = 0;
+        int ofs = 1;
+        if (key > a[base + hint]) {
+            // Галоп вправо
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && key > a[base + hint + ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs; // переполнение
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            lastOfs += hint;
+            ofs += hint;
+        } else {
+            // Галоп влево
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && key <= a[base + hint - ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            int tmp = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - tmp;
+        }
+
+        // Бинарный поиск внутри найденного интервала (lastOfs, ofs]
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int m = lastOfs + ((ofs - lastOfs) >>> 1);
+            if (key > a[base + m]) {
+                lastOfs = m + 1;
+            } else {
+                ofs = m;
+            }
+        }
+        return ofs;
+    }
+
+    // То же, что gallopLeft, но позиция правее всех равных key элементов
+    private static int gallopRight(double key, double[] a, int base, int len, int hint) {
+        int lastOfs = 0;
+        int ofs = 1;
+        if (key < a[base + hint]) {
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && key < a[base + hint - ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            int tmp = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - tmp;
+        } else {
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && key >= a[base + hint + ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            lastOfs += hint;
+            ofs += hint;
+        }
+
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int m = lastOfs + ((ofs - lastOfs) >>> 1);
+            if (key < a[base + m]) {
+                ofs = m;
+            } else {
+                lastOfs = m + 1;
+            }
+        }
+        return ofs;
+    }
+
+    // Состояние слияний одной сортировки: массив и временный буфер;
+    // проход по сериям и порог галопа - в RunMerger
+    private static final class MergeState extends RunMerger {
+        final double[] arr;
+        double[] tmp;
+
+        MergeState(double[] arr, int n) {
+            super(n);
+            this.arr = arr;
+        }
+
+        @Override
+        int countRunAndMakeAscending(int lo, int hi) {
+            return DoubleTimsort.countRunAndMakeAscending(arr, lo, hi);
+        }
+
+        @Override
+        void binaryInsertionSort(int lo, int hi, int start) {
+            DoubleTimsort.binaryInsertionSort(arr, lo, hi, start);
+        }
+
+        @Override
+        void merge(int left, int mid, int right) {
+            DoubleTimsort.merge(arr, left, mid, right, this);
+        }
+
+        double[] ensureCapacity(int minCapacity) {
+            if (tmp == null || tmp.length < minCapacity) {
+                tmp = new double[tmpLength(minCapacity)];
+            }
+            return tmp;
+        }
+    }
+}
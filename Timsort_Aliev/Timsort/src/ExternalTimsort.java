@@ -0,0 +1,306 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Внешняя сортировка для массивов, не помещающихся в кучу.
+// Массив читается порциями в пределах бюджета памяти, каждая порция сортируется
+// обычным Timsort и сбрасывается во временный файл (серию). Затем серии сливаются
+// k-путевым слиянием через кучу на примитивных массивах; если серий слишком много
+// для буферов в пределах бюджета, слияние идёт в несколько проходов.
+// Формат результата совпадает с форматом входа (текстовый или бинарный, см. TestData).
+public class ExternalTimsort {
+
+    private static final long MIN_MEMORY_BUDGET = 1 << 20;
+    // Меньше этого буфера на серию слияние упирается в случайные чтения с диска
+    private static final int MIN_MERGE_BUFFER_INTS = 1 << 14;
+    private static final int SPILL_BUFFER_INTS = 1 << 18;
+
+    private final long memoryBudget;
+    private final Path spillDir;
+
+    public ExternalTimsort(long memoryBudgetBytes, Path spillDir) {
+        if (memoryBudgetBytes < MIN_MEMORY_BUDGET) {
+            throw new IllegalArgumentException("Бюджет памяти меньше " + MIN_MEMORY_BUDGET + " байт");
+        }
+        this.memoryBudget = memoryBudgetBytes;
+        this.spillDir = spillDir;
+    }
+
+    public void sort(Path input, Path output) throws IOException {
+        try (TestData.ArrayReader reader = TestData.openReader(input);
+             TestData.ArrayWriter writer = TestData.openWriterLike(reader, output)) {
+            int size;
+            while ((size = reader.beginArray()) >= 0) {
+                sortArray(reader, writer, size);
+            }
+        }
+    }
+
+    private void sortArray(TestData.ArrayReader reader, TestData.ArrayWriter writer, int size) throws IOException {
+        writer.beginArray(size);
+        int chunkInts = chunkCapacity();
+
+        // Помещается в бюджет - сортируем в памяти
+        if (size <= chunkInts) {
+            int[] arr = new int[size];
+            reader.read(arr, 0, size);
+            Timsort.sort(arr, 0, size, SortStrategy.TIMSORT, null);
+            writer.write(arr, 0, size);
+            return;
+        }
+
+        List<Path> created = new ArrayList<>();
+        try {
+            // Порции сортируются и сбрасываются в серии
+            List<Path> runs = new ArrayList<>();
+            int[] chunk = new int[chunkInts];
+            for (int left = size; left > 0; ) {
+                int len = Math.min(chunkInts, left);
+                reader.read(chunk, 0, len);
+                Timsort.sort(chunk, 0, len, SortStrategy.TIMSORT, null);
+                Path run = newSpillFile(created);
+                try (SpillWriter out = new SpillWriter(run, SPILL_BUFFER_INTS)) {
+                    out.write(chunk, 0, len);
+                }
+                runs.add(run);
+                left -= len;
+            }
+            chunk = null; // память порции нужна буферам слияния
+
+            // Промежуточные проходы, пока серий больше допустимой ширины слияния
+            int fanIn = maxFanIn();
+            while (runs.size() > fanIn) {
+                List<Path> next = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += fanIn) {
+                    List<Path> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                    if (group.size() == 1) {
+                        next.add(group.get(0));
+                        continue;
+                    }
+                    Path merged = newSpillFile(created);
+                    try (SpillWriter out = new SpillWriter(merged, bufferInts(group.size()))) {
+                        merge(group, out::write);
+                    }
+                    for (Path run : group) {
+                        Files.deleteIfExists(run);
+                    }
+                    next.add(merged);
+                }
+                runs = next;
+            }
+
+            merge(runs, writer::write);
+        } finally {
+            for (Path path : created) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    interface IntSink {
+        void write(int[] src, int off, int len) throws IOException;
+    }
+
+    // k-путевое слияние серий: куча хранит номера серий, упорядоченные по текущим головам
+    private void merge(List<Path> runs, IntSink sink) throws IOException {
+        int k = runs.size();
+        int bufferInts = bufferInts(k);
+        SpillReader[] readers = new SpillReader[k];
+        int[] heads = new int[k];
+        int[] heap = new int[k];
+        int heapSize = 0;
+        try {
+            for (int i = 0; i < k; i++) {
+                readers[i] = new SpillReader(runs.get(i), bufferInts);
+                if (readers[i].hasNext()) {
+                    heads[i] = readers[i].next();
+                    heap[heapSize++] = i;
+                }
+            }
+            for (int i = (heapSize >>> 1) - 1; i >= 0; i--) {
+                siftDown(heap, heads, heapSize, i);
+            }
+
+            int[] out = new int[bufferInts];
+            int outPos = 0;
+            while (heapSize > 1) {
+                int run = heap[0];
+                out[outPos++] = heads[run];
+                if (outPos == out.length) {
+                    sink.write(out, 0, outPos);
+                    outPos = 0;
+                }
+
+                SpillReader reader = readers[run];
+                if (reader.hasNext()) {
+                    heads[run] = reader.next();
+                } else {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(heap, heads, heapSize, 0);
+            }
+
+            // Осталась одна серия - переносим её хвост целиком
+            if (heapSize == 1) {
+                int run = heap[0];
+                out[outPos++] = heads[run];
+                sink.write(out, 0, outPos);
+                outPos = 0;
+                readers[run].transferTo(sink);
+            }
+            if (outPos > 0) sink.write(out, 0, outPos);
+        } finally {
+            for (SpillReader reader : readers) {
+                if (reader != null) reader.close();
+            }
+        }
+    }
+
+    private static void siftDown(int[] heap, int[] heads, int size, int i) {
+        int run = heap[i];
+        int key = heads[run];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && heads[heap[right]] < heads[heap[child]]) child = right;
+            if (key <= heads[heap[child]]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = run;
+    }
+
+    // Порция в памяти: сам массив плюс до n/2 временного буфера Timsort.
+    // Стратегия задана явно: подсчёт и поразрядная сортировка берут до n и больше
+    // дополнительной памяти, и AUTO вышел бы за бюджет.
+    private int chunkCapacity() {
+        return (int) Math.min(Integer.MAX_VALUE - 8, memoryBudget / 6);
+    }
+
+    // На каждую серию и на выход - массив int и буфер вне кучи того же размера
+    private int bufferInts(int runs) {
+        long ints = memoryBudget / (8L * (runs + 1));
+        return (int) Math.max(MIN_MERGE_BUFFER_INTS, Math.min(1 << 24, ints));
+    }
+
+    private int maxFanIn() {
+        return (int) Math.max(2, Math.min(Integer.MAX_VALUE, memoryBudget / (8L * MIN_MERGE_BUFFER_INTS) - 1));
+    }
+
+    private Path newSpillFile(List<Path> created) throws IOException {
+        Path path = Files.createTempFile(spillDir, "timsort-run-", ".bin");
+        created.add(path);
+        return path;
+    }
+
+    // Запись серии: сырые int в little-endian без заголовка
+    private static final class SpillWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        SpillWriter(Path path, int bufferInts) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocateDirect(bufferInts * 4).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void write(int[] src, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buffer.hasRemaining()) flush();
+                int n = Math.min(len, buffer.remaining() >>> 2);
+                buffer.asIntBuffer().put(src, off, n);
+                buffer.position(buffer.position() + 4 * n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Чтение серии большими блоками в int[]
+    private static final class SpillReader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int[] block;
+        private int pos;
+        private int limit;
+        private boolean eof;
+
+        SpillReader(Path path, int bufferInts) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.buffer = ByteBuffer.allocateDirect(bufferInts * 4).order(ByteOrder.LITTLE_ENDIAN);
+            this.block = new int[bufferInts];
+        }
+
+        boolean hasNext() throws IOException {
+            return pos < limit || fill();
+        }
+
+        int next() {
+            return block[pos++];
+        }
+
+        void transferTo(IntSink sink) throws IOException {
+            while (hasNext()) {
+                sink.write(block, pos, limit - pos);
+                pos = limit;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            if (eof) return false;
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+            buffer.flip();
+            pos = 0;
+            limit = buffer.remaining() >>> 2;
+            buffer.asIntBuffer().get(block, 0, limit);
+            return limit > 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // java ExternalTimsort <вход> <выход> [бюджет памяти, МБ] [каталог для серий]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Использование: ExternalTimsort <вход> <выход> [память, МБ] [каталог для серий]");
+            return;
+        }
+        long budget = (args.length > 2 ? Long.parseLong(args[2]) : 256) << 20;
+        Path spillDir = args.length > 3 ? Paths.get(args[3]) : Paths.get(System.getProperty("java.io.tmpdir"));
+        new ExternalTimsort(budget, spillDir).sort(Paths.get(args[0]), Paths.get(args[1]));
+    }
+}
@@ -0,0 +1,95 @@
+// Часть одной сортировки Timsort, не зависящая от типа элементов: проход по сериям
+// с добивкой коротких до minRun, решения о слияниях по RunStack, порог галопа
+// и рост временного буфера. Общая для всех вариантов сортировки.
+//
+// Сравнения, галоп и циклы слияния остаются в подклассах под конкретный тип:
+// обобщённый по элементу код упаковывал бы примитивы или шёл бы через виртуальный
+// вызов на каждое сравнение. Отсюда они вызываются раз на серию или слияние.
+abstract class RunMerger {
+    private final int maxTmpLength;
+    // Сколько побед подряд нужно, чтобы перейти в режим галопа
+    int minGallop = Timsort.MIN_GALLOP;
+
+    RunMerger(int n) {
+        this.maxTmpLength = n >>> 1;
+    }
+
+    // Сортировка участка [lo, hi)
+    final void sort(int lo, int hi) {
+        int n = hi - lo;
+        if (n < 2) return;
+
+        // Маленький массив: одна естественная серия + бинарные вставки, без слияний
+        if (n < Timsort.MIN_MERGE) {
+            int initRunLen = countRunAndMakeAscending(lo, hi);
+            binaryInsertionSort(lo, hi, lo + initRunLen);
+            return;
+        }
+
+        RunStack stack = new RunStack(n);
+        int minRun = RunStack.minRunLength(n);
+        int i;
+        do {
+            // Находим естественную серию, короткую добиваем до minRun вставками
+            int runLen = countRunAndMakeAscending(lo, hi);
+            if (runLen < minRun) {
+                int force = Math.min(n, minRun);
+                binaryInsertionSort(lo, lo + force, lo + runLen);
+                runLen = force;
+            }
+
+            stack.push(lo, runLen);
+            while ((i = stack.collapseIndex()) >= 0) {
+                mergeAt(stack, i);
+            }
+
+            lo += runLen;
+            n -= runLen;
+        } while (n != 0);
+
+        // Финализация слияния
+        while ((i = stack.forceCollapseIndex()) >= 0) {
+            mergeAt(stack, i);
+        }
+    }
+
+    // Слияние серий i и i + 1 стека
+    private void mergeAt(RunStack stack, int i) {
+        int base1 = stack.runBase[i];
+        int base2 = stack.runBase[i + 1];
+        int len2 = stack.runLen[i + 1];
+        stack.mergedAt(i);
+        merge(base1, base2, base2 + len2);
+    }
+
+    // Длина серии, начинающейся в lo; убывающая серия разворачивается
+    abstract int countRunAndMakeAscending(int lo, int hi);
+
+    // Сортировка вставками [lo, hi), где [lo, start) уже отсортирован
+    abstract void binaryInsertionSort(int lo, int hi, int start);
+
+    // Слияние соседних серий [left, mid) и [mid, right)
+    abstract void merge(int left, int mid, int right);
+
+    // Длина нового временного буфера не меньше minCapacity: сначала INITIAL_TMP_LENGTH,
+    // дальше степени двойки, но не больше половины массива
+    final int tmpLength(int minCapacity) {
+        int initial = Math.min(Timsort.INITIAL_TMP_LENGTH, maxTmpLength);
+        if (minCapacity <= initial) return initial;
+        int newSize = Integer.highestOneBit(minCapacity) << 1;
+        if (newSize < 0 || newSize > maxTmpLength) {
+            newSize = Math.max(minCapacity, maxTmpLength);
+        }
+        return newSize;
+    }
+
+    // Порог после выхода из галопа: штраф, чтобы не возвращаться в него сразу
+    static int afterGallop(int minGallop) {
+        return Math.max(minGallop, 0) + 2;
+    }
+
+    // Порог, с которого начнёт следующее слияние
+    final void storeMinGallop(int minGallop) {
+        this.minGallop = Math.max(minGallop, 1);
+    }
+}
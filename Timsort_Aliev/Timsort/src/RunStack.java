@@ -0,0 +1,64 @@
+// Стек серий Timsort: начало и длина каждой серии в примитивных массивах.
+// Общий для всех вариантов сортировки: решает, какие серии пора сливать,
+// само слияние выполняет конкретная сортировка.
+class RunStack {
+    final int[] runBase;
+    final int[] runLen;
+    int size;
+
+    RunStack(int n) {
+        // При соблюдении инвариантов длины серий растут не медленнее чисел
+        // Фибоначчи, так что глубина стека логарифмическая
+        int stackLen = (n < 120 ? 5 : n < 1542 ? 10 : n < 119151 ? 24 : 49);
+        this.runBase = new int[stackLen];
+        this.runLen = new int[stackLen];
+    }
+
+    // нахождение минимальной серии
+    static int minRunLength(int n) {
+        int r = 0;
+        while (n >= Timsort.MIN_MERGE) {
+            r |= (n & 1);
+            n >>= 1;
+        }
+        return n + r;
+    }
+
+    void push(int base, int len) {
+        runBase[size] = base;
+        runLen[size] = len;
+        size++;
+    }
+
+    // Индекс серии, которую нужно слить со следующей, чтобы восстановить
+    // инварианты runLen[i - 2] > runLen[i - 1] + runLen[i] и runLen[i - 1] > runLen[i],
+    // или -1, если они выполнены
+    int collapseIndex() {
+        if (size < 2) return -1;
+        int n = size - 2;
+        if (n > 0 && runLen[n - 1] <= runLen[n] + runLen[n + 1]
+                || n > 1 && runLen[n - 2] <= runLen[n - 1] + runLen[n]) {
+            if (runLen[n - 1] < runLen[n + 1]) n--;
+            return n;
+        }
+        return runLen[n] <= runLen[n + 1] ? n : -1;
+    }
+
+    // Индекс для финального слияния всех оставшихся серий, или -1
+    int forceCollapseIndex() {
+        if (size < 2) return -1;
+        int n = size - 2;
+        if (n > 0 && runLen[n - 1] < runLen[n + 1]) n--;
+        return n;
+    }
+
+    // Серии i и i + 1 слиты в одну
+    void mergedAt(int i) {
+        runLen[i] += runLen[i + 1];
+        if (i == size - 3) {
+            runBase[i + 1] = runBase[i + 2];
+            runLen[i + 1] = runLen[i + 2];
+        }
+        size--;
+    }
+}
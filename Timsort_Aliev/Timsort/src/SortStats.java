@@ -0,0 +1,76 @@
+// Статистика одной сортировки. Передаётся в Timsort.sort(arr, stats) явно;
+// обычный Timsort.sort(arr) ничего не считает.
+public class SortStats {
+    long comparisons;
+    long moves;
+    long runs;
+    long merges;
+    long gallopSwitches;
+    long scratchBytes;
+    SortStrategy strategy;
+
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    // Записи элементов в массив или во временный буфер
+    public long getMoves() {
+        return moves;
+    }
+
+    // Естественные серии, найденные во входных данных
+    public long getRuns() {
+        return runs;
+    }
+
+    public long getMerges() {
+        return merges;
+    }
+
+    // Сколько раз слияние переходило в режим галопа
+    public long getGallopSwitches() {
+        return gallopSwitches;
+    }
+
+    // Байты, выделенные под временные буферы
+    public long getScratchBytes() {
+        return scratchBytes;
+    }
+
+    // Стратегия, которой был отсортирован массив (для AUTO - выбранная)
+    public SortStrategy getStrategy() {
+        return strategy;
+    }
+
+    public void reset() {
+        comparisons = 0;
+        moves = 0;
+        runs = 0;
+        merges = 0;
+        gallopSwitches = 0;
+        scratchBytes = 0;
+        strategy = null;
+    }
+
+    // Сложение статистик участков параллельной сортировки
+    synchronized void add(SortStats other) {
+        comparisons += other.comparisons;
+        moves += other.moves;
+        runs += other.runs;
+        merges += other.merges;
+        gallopSwitches += other.gallopSwitches;
+        scratchBytes += other.scratchBytes;
+        if (strategy == null) strategy = other.strategy;
+    }
+
+    @Override
+    public String toString() {
+        return "SortStats{strategy=" + strategy
+                + ", comparisons=" + comparisons
+                + ", moves=" + moves
+                + ", runs=" + runs
+                + ", merges=" + merges
+                + ", gallopSwitches=" + gallopSwitches
+                + ", scratchBytes=" + scratchBytes + "}";
+    }
+}
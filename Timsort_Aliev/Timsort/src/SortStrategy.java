@@ -0,0 +1,9 @@
+// Способ сортировки int[]. AUTO выбирает по данным: для малого диапазона значений
+// относительно размера - подсчётом или поразрядной сортировкой, для почти
+// упорядоченных данных и в остальных случаях - Timsort.
+public enum SortStrategy {
+    AUTO,
+    TIMSORT,
+    COUNTING,
+    RADIX
+}
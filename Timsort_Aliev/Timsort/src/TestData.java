@@ -0,0 +1,599 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Чтение и запись тестовых данных Timsort.
+//
+// Текстовый формат: по строке на массив, "size:a,b,c". Разбирается прямо из байтов
+// FileChannel без промежуточных String, числа пишутся так же - цифрами в байтовый буфер.
+//
+// Бинарный формат (little-endian): магическое число, количество массивов,
+// размеры всех массивов, затем сами элементы подряд. Файл читается через
+// отображение в память; sortBinaryFile сортирует массивы и пишет их на прежнее место.
+public final class TestData {
+
+    static final int BINARY_MAGIC = 0x31425354; // "TSB1"
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+    // Окно отображения: MappedByteBuffer не больше 2 ГБ
+    private static final int MAP_WINDOW_INTS = 1 << 28;
+
+    private TestData() {
+    }
+
+    public static void generateText(Path path, int numArrays, int minSize, int maxSize, Random random)
+            throws IOException {
+        try (TextWriter writer = new TextWriter(path)) {
+            int[] arr = new int[maxSize];
+            for (int i = 0; i < numArrays; i++) {
+                int size = minSize + random.nextInt(maxSize - minSize + 1);
+                for (int j = 0; j < size; j++) {
+                    arr[j] = random.nextInt(10000);
+                }
+                writer.writeArray(arr, 0, size);
+            }
+        }
+    }
+
+    public static List<int[]> readText(Path path) throws IOException {
+        List<int[]> arrays = new ArrayList<>();
+        try (TextReader reader = new TextReader(path)) {
+            int[] arr;
+            while ((arr = reader.next()) != null) {
+                arrays.add(arr);
+            }
+        }
+        return arrays;
+    }
+
+    public static void writeText(Path path, List<int[]> arrays) throws IOException {
+        try (TextWriter writer = new TextWriter(path)) {
+            for (int[] arr : arrays) {
+                writer.writeArray(arr, 0, arr.length);
+            }
+        }
+    }
+
+    // Последовательное чтение массивов из файла любого из форматов:
+    // сначала размер очередного массива, затем его элементы порциями
+    public interface ArrayReader extends Closeable {
+        // Размер следующего массива или -1 в конце файла
+        int beginArray() throws IOException;
+
+        // Следующие len элементов текущего массива
+        void read(int[] dst, int off, int len) throws IOException;
+
+        // Следующий массив целиком или null в конце файла
+        default int[] next() throws IOException {
+            int size = beginArray();
+            if (size < 0) return null;
+            int[] arr = new int[size];
+            read(arr, 0, size);
+            return arr;
+        }
+    }
+
+    public interface ArrayWriter extends Closeable {
+        void beginArray(int size) throws IOException;
+
+        // Следующие len элементов текущего массива
+        void write(int[] src, int off, int len) throws IOException;
+
+        default void writeArray(int[] src, int off, int len) throws IOException {
+            beginArray(len);
+            write(src, off, len);
+        }
+    }
+
+    public static boolean isBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining()) {
+                if (channel.read(head) < 0) break;
+            }
+            return !head.hasRemaining() && head.getInt(0) == BINARY_MAGIC;
+        }
+    }
+
+    // Читатель для файла, формат определяется по магическому числу
+    public static ArrayReader openReader(Path path) throws IOException {
+        return isBinary(path) ? new BinaryReader(path) : new TextReader(path);
+    }
+
+    // Писатель в том же формате, что и у reader; бинарному нужны размеры из заголовка входа
+    public static ArrayWriter openWriterLike(ArrayReader reader, Path path) throws IOException {
+        if (reader instanceof BinaryReader) {
+            return new BinaryWriter(path, ((BinaryReader) reader).header().sizes);
+        }
+        return new TextWriter(path);
+    }
+
+    // Потоковое чтение текстового формата
+    public static final class TextReader implements ArrayReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final byte[] bytes;
+        private int pos;
+        private int limit;
+        private long line = 1;
+        private int remaining; // непрочитанные элементы текущего массива
+
+        public TextReader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.bytes = new byte[IO_BUFFER_SIZE];
+            this.buffer = ByteBuffer.wrap(bytes);
+        }
+
+        @Override
+        public int beginArray() throws IOException {
+            if (remaining != 0) throw new IllegalStateException("Предыдущий массив прочитан не полностью");
+            int c = read();
+            while (c == '\n' || c == '\r') {
+                if (c == '\n') line++;
+                c = read();
+            }
+            if (c == -1) return -1;
+
+            int size = parseNumber(c, ':');
+            if (size < 0) throw error("отрицательный размер");
+            if (size == 0) {
+                c = read();
+                if (c != '\n' && c != '\r' && c != -1) throw error("ожидался конец строки");
+                if (c == '\n') line++;
+            }
+            remaining = size;
+            return size;
+        }
+
+        @Override
+        public void read(int[] dst, int off, int len) throws IOException {
+            if (len > remaining) throw new IllegalArgumentException("В массиве осталось " + remaining + " элементов");
+            for (int i = off, end = off + len; i < end; i++) {
+                remaining--;
+                dst[i] = parseNumber(read(), remaining == 0 ? '\n' : ',');
+            }
+        }
+
+        // Разбирает число, начинающееся с байта c, до символа end (для '\n' подходят также '\r' и конец файла)
+        private int parseNumber(int c, char end) throws IOException {
+            boolean negative = c == '-';
+            if (negative) c = read();
+            if (c < '0' || c > '9') throw error("ожидалась цифра");
+
+            long value = 0;
+            do {
+                value = value * 10 + (c - '0');
+                if (value > (long) Integer.MAX_VALUE + 1) throw error("число вне диапазона int");
+                c = read();
+            } while (c >= '0' && c <= '9');
+
+            if (c != end && !(end == '\n' && (c == '\r' || c == -1))) {
+                throw error(c == '\n' || c == -1 ? "элементов меньше, чем указано в размере"
+                        : "неожиданный символ '" + (char) c + "'");
+            }
+            if (c == '\n') line++;
+
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) throw error("число вне диапазона int");
+            return (int) value;
+        }
+
+        private int read() throws IOException {
+            if (pos == limit && !fill()) return -1;
+            return bytes[pos++] & 0xFF;
+        }
+
+        private boolean fill() throws IOException {
+            buffer.clear();
+            int n;
+            do {
+                n = channel.read(buffer);
+            } while (n == 0);
+            pos = 0;
+            limit = Math.max(n, 0);
+            return n > 0;
+        }
+
+        private IOException error(String message) {
+            return new IOException("Строка " + line + ": " + message);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Потоковая запись текстового формата
+    public static final class TextWriter implements ArrayWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final byte[] bytes;
+        private final byte[] digits = new byte[11];
+        private int pos;
+        private int remaining; // незаписанные элементы текущего массива
+        private boolean first;
+
+        public TextWriter(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.bytes = new byte[IO_BUFFER_SIZE];
+            this.buffer = ByteBuffer.wrap(bytes);
+        }
+
+        @Override
+        public void beginArray(int size) throws IOException {
+            if (remaining != 0) throw new IllegalStateException("Предыдущий массив записан не полностью");
+            writeInt(size);
+            writeByte(':');
+            if (size == 0) writeByte('\n');
+            remaining = size;
+            first = true;
+        }
+
+        @Override
+        public void write(int[] src, int off, int len) throws IOException {
+            if (len > remaining) throw new IllegalArgumentException("В массиве осталось " + remaining + " элементов");
+            for (int i = off, end = off + len; i < end; i++) {
+                if (!first) writeByte(',');
+                first = false;
+                writeInt(src[i]);
+            }
+            remaining -= len;
+            if (remaining == 0 && len > 0) writeByte('\n');
+        }
+
+        private void writeInt(int value) throws IOException {
+            if (pos + digits.length > bytes.length) flush();
+            if (value == Integer.MIN_VALUE) {
+                for (byte b : "-2147483648".getBytes()) {
+                    bytes[pos++] = b;
+                }
+                return;
+            }
+            if (value < 0) {
+                bytes[pos++] = '-';
+                value = -value;
+            }
+            int n = 0;
+            do {
+                digits[n++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            while (n > 0) {
+                bytes[pos++] = digits[--n];
+            }
+        }
+
+        private void writeByte(char c) throws IOException {
+            if (pos == bytes.length) flush();
+            bytes[pos++] = (byte) c;
+        }
+
+        private void flush() throws IOException {
+            buffer.clear().limit(pos);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            pos = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Заголовок бинарного файла: размеры массивов и смещения их данных
+    public static final class BinaryHeader {
+        public final int[] sizes;
+        public final long dataOffset;
+
+        BinaryHeader(int[] sizes) {
+            this.sizes = sizes;
+            this.dataOffset = 8L + 4L * sizes.length;
+        }
+
+        public int count() {
+            return sizes.length;
+        }
+
+        public long totalElements() {
+            long total = 0;
+            for (int size : sizes) {
+                total += size;
+            }
+            return total;
+        }
+
+        // Смещение в байтах первого элемента массива index
+        public long offsetOf(int index) {
+            long offset = dataOffset;
+            for (int i = 0; i < index; i++) {
+                offset += 4L * sizes[i];
+            }
+            return offset;
+        }
+    }
+
+    public static BinaryHeader readBinaryHeader(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, head, 0);
+        head.flip();
+        if (head.getInt() != BINARY_MAGIC) throw new IOException("Не бинарный файл тестовых данных");
+        int count = head.getInt();
+        if (count < 0) throw new IOException("Повреждённый заголовок: count = " + count);
+
+        ByteBuffer sizesBuf = ByteBuffer.allocate(4 * count).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, sizesBuf, 8);
+        sizesBuf.flip();
+        int[] sizes = new int[count];
+        sizesBuf.asIntBuffer().get(sizes);
+        return new BinaryHeader(sizes);
+    }
+
+    static void writeBinaryHeader(FileChannel channel, int[] sizes) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(8 + 4 * sizes.length).order(ByteOrder.LITTLE_ENDIAN);
+        head.putInt(BINARY_MAGIC).putInt(sizes.length);
+        head.asIntBuffer().put(sizes);
+        head.position(head.limit());
+        head.flip();
+        writeFully(channel, head, 0);
+    }
+
+    public static void writeBinary(Path path, List<int[]> arrays) throws IOException {
+        int[] sizes = new int[arrays.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = arrays.get(i).length;
+        }
+        try (BinaryWriter writer = new BinaryWriter(path, sizes)) {
+            for (int[] arr : arrays) {
+                writer.writeArray(arr, 0, arr.length);
+            }
+        }
+    }
+
+    // Последовательное чтение бинарного формата через буфер вне кучи
+    public static final class BinaryReader implements ArrayReader {
+        private final FileChannel channel;
+        private final BinaryHeader header;
+        private final ByteBuffer buffer;
+        private long position;
+        private long fileRemaining; // непрочитанные байты данных в файле
+        private int index;
+        private int remaining;
+
+        public BinaryReader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.header = readBinaryHeader(channel);
+            this.buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            this.buffer.limit(0);
+            this.position = header.dataOffset;
+            this.fileRemaining = 4L * header.totalElements();
+        }
+
+        public BinaryHeader header() {
+            return header;
+        }
+
+        @Override
+        public int beginArray() {
+            if (remaining != 0) throw new IllegalStateException("Предыдущий массив прочитан не полностью");
+            if (index == header.count()) return -1;
+            remaining = header.sizes[index++];
+            return remaining;
+        }
+
+        @Override
+        public void read(int[] dst, int off, int len) throws IOException {
+            if (len > remaining) throw new IllegalArgumentException("В массиве осталось " + remaining + " элементов");
+            remaining -= len;
+            while (len > 0) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), fileRemaining));
+                    readFully(channel, buffer, position);
+                    position += buffer.limit();
+                    fileRemaining -= buffer.limit();
+                    buffer.flip();
+                }
+                int n = Math.min(len, buffer.remaining() >>> 2);
+                buffer.asIntBuffer().get(dst, off, n);
+                buffer.position(buffer.position() + 4 * n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Последовательная запись бинарного формата; размеры массивов нужны заранее для заголовка
+    public static final class BinaryWriter implements ArrayWriter {
+        private final FileChannel channel;
+        private final int[] sizes;
+        private final ByteBuffer buffer;
+        private long position;
+        private int index;
+        private int remaining;
+
+        public BinaryWriter(Path path, int[] sizes) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.sizes = sizes.clone();
+            this.buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            writeBinaryHeader(channel, sizes);
+            this.position = 8L + 4L * sizes.length;
+        }
+
+        @Override
+        public void beginArray(int size) {
+            if (remaining != 0) throw new IllegalStateException("Предыдущий массив записан не полностью");
+            if (index == sizes.length || sizes[index] != size) {
+                throw new IllegalStateException("Размер массива " + index + " не совпадает с заголовком");
+            }
+            index++;
+            remaining = size;
+        }
+
+        @Override
+        public void write(int[] src, int off, int len) throws IOException {
+            if (len > remaining) throw new IllegalArgumentException("В массиве осталось " + remaining + " элементов");
+            remaining -= len;
+            while (len > 0) {
+                if (!buffer.hasRemaining()) flush();
+                int n = Math.min(len, buffer.remaining() >>> 2);
+                buffer.asIntBuffer().put(src, off, n);
+                buffer.position(buffer.position() + 4 * n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            position += writeFully(channel, buffer, position);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    public static List<int[]> readBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            BinaryHeader header = readBinaryHeader(channel);
+            MappedData data = new MappedData(channel, FileChannel.MapMode.READ_ONLY, header);
+            List<int[]> arrays = new ArrayList<>(header.count());
+            long position = 0;
+            for (int size : header.sizes) {
+                int[] arr = new int[size];
+                data.get(position, arr, size);
+                arrays.add(arr);
+                position += size;
+            }
+            return arrays;
+        }
+    }
+
+    // Сортирует каждый массив бинарного файла и записывает его на то же место.
+    // Это не сортировка внутри отображения: массив читается из отображённых окон
+    // в буфер на куче, сортируется и пишется обратно через те же окна, так что
+    // нужна куча размером с самый большой массив (плюс буфер Timsort).
+    public static void sortBinaryFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            BinaryHeader header = readBinaryHeader(channel);
+            MappedData data = new MappedData(channel, FileChannel.MapMode.READ_WRITE, header);
+            int[] scratch = new int[0];
+            long position = 0;
+            for (int size : header.sizes) {
+                if (scratch.length < size) scratch = new int[size];
+                data.get(position, scratch, size);
+                Timsort.sort(scratch, 0, size, SortStrategy.TIMSORT, null);
+                data.put(position, scratch, size);
+                position += size;
+            }
+            data.force();
+        }
+    }
+
+    // Элементы бинарного файла, отображённые окнами по MAP_WINDOW_INTS:
+    // окно отображается при первом обращении и служит всем массивам, что в нём лежат
+    private static final class MappedData {
+        private final FileChannel channel;
+        private final FileChannel.MapMode mode;
+        private final long dataOffset;
+        private final long totalInts;
+        private final MappedByteBuffer[] windows;
+        private final IntBuffer[] views;
+
+        MappedData(FileChannel channel, FileChannel.MapMode mode, BinaryHeader header) {
+            this.channel = channel;
+            this.mode = mode;
+            this.dataOffset = header.dataOffset;
+            this.totalInts = header.totalElements();
+            this.windows = new MappedByteBuffer[(int) ((totalInts + MAP_WINDOW_INTS - 1) / MAP_WINDOW_INTS)];
+            this.views = new IntBuffer[windows.length];
+        }
+
+        // Копирует len элементов с номера position в dst[0, len)
+        void get(long position, int[] dst, int len) throws IOException {
+            for (int done = 0; done < len; ) {
+                int w = (int) (position / MAP_WINDOW_INTS);
+                int from = (int) (position % MAP_WINDOW_INTS);
+                int n = Math.min(len - done, windowInts(w) - from);
+                window(w).get(from, dst, done, n);
+                done += n;
+                position += n;
+            }
+        }
+
+        // Записывает src[0, len) на место элементов с номера position
+        void put(long position, int[] src, int len) throws IOException {
+            for (int done = 0; done < len; ) {
+                int w = (int) (position / MAP_WINDOW_INTS);
+                int from = (int) (position % MAP_WINDOW_INTS);
+                int n = Math.min(len - done, windowInts(w) - from);
+                window(w).put(from, src, done, n);
+                done += n;
+                position += n;
+            }
+        }
+
+        void force() {
+            for (MappedByteBuffer window : windows) {
+                if (window != null) window.force();
+            }
+        }
+
+        private int windowInts(int w) {
+            return (int) Math.min(MAP_WINDOW_INTS, totalInts - (long) w * MAP_WINDOW_INTS);
+        }
+
+        private IntBuffer window(int w) throws IOException {
+            if (views[w] == null) {
+                windows[w] = channel.map(mode, dataOffset + 4L * w * MAP_WINDOW_INTS, 4L * windowInts(w));
+                views[w] = windows[w].order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            }
+            return views[w];
+        }
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) throw new EOFException("Неожиданный конец файла");
+            position += n;
+        }
+    }
+
+    static int writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        int written = 0;
+        while (buf.hasRemaining()) {
+            int n = channel.write(buf, position + written);
+            written += n;
+        }
+        return written;
+    }
+}
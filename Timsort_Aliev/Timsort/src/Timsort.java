@@ -1,217 +1,823 @@
 import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
 
 public class Timsort {
 
-    private static final int MIN_MERGE = 32;
-    private static long iterations = 0;
+    static final int MIN_MERGE = 32;
+    static final int MIN_GALLOP = 7;
+    static final int INITIAL_TMP_LENGTH = 256;
+    // Участки меньше этого размера параллельная сортировка обрабатывает последовательно
+    public static final int PARALLEL_THRESHOLD = 1 << 13;
+    // Меньшие массивы AUTO всегда отдаёт Timsort: выбор дороже выигрыша
+    private static final int AUTO_MIN_LENGTH = 256;
+    // Подсчёт выбирается, если диапазон значений не больше n * COUNTING_RANGE_FACTOR
+    private static final int COUNTING_RANGE_FACTOR = 2;
+    private static final int MAX_COUNTING_RANGE = 1 << 24;
+    // Почти упорядоченный вход: нарушений порядка не больше n / PRESORTED_RATIO
+    private static final int PRESORTED_RATIO = 64;
+    private static final int RADIX_BITS = 8;
 
     public static void sort(int[] arr) {
+        sort(arr, null);
+    }
+
+    // Сортировка со сбором статистики; stats == null - без подсчётов
+    public static void sort(int[] arr, SortStats stats) {
+        sort(arr, SortStrategy.AUTO, stats);
+    }
+
+    // Сортировка с явно заданной стратегией; выбранная стратегия попадает в stats
+    public static void sort(int[] arr, SortStrategy strategy, SortStats stats) {
         if (arr == null || arr.length < 2) return;
+        sort(arr, 0, arr.length, strategy, stats);
+    }
 
-        int n = arr.length;
-        iterations = 0;
+    public static void parallelSort(int[] arr, int parallelism) {
+        parallelSort(arr, parallelism, PARALLEL_THRESHOLD, null);
+    }
 
-        if (n < MIN_MERGE) {
-            insertionSort(arr, 0, n);
-            return;
+    public static void parallelSort(int[] arr, int parallelism, int threshold) {
+        parallelSort(arr, parallelism, threshold, null);
+    }
+
+    // Параллельная сортировка: массив режется на участки, каждый сортируется
+    // обычным Timsort, затем участки попарно сливаются параллельными слияниями.
+    public static void parallelSort(int[] arr, int parallelism, int threshold, SortStats stats) {
+        if (parallelism < 1 || threshold < 1) {
+            throw new IllegalArgumentException("parallelism и threshold должны быть положительными");
         }
+        if (arr == null || arr.length < 2) return;
 
-        int minRun = minRunLength(n);
+        int n = arr.length;
+        if (parallelism == 1 || n <= threshold) {
+            sort(arr, 0, n, stats);
+            return;
+        }
 
-        // Сортировка маленьких серий
-        for (int i = 0; i < n; i += minRun) {
-            int end = Math.min(i + minRun, n);
-            insertionSort(arr, i, end);
+        // Примерно по четыре участка на поток, но не мельче порога
+        int gran = Math.max(n / (parallelism << 2), threshold);
+        int[] buf = new int[n];
+        if (stats != null) stats.scratchBytes += (long) n * Integer.BYTES;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ParallelSorter(arr, buf, 0, n, true, gran, stats));
+        } finally {
+            pool.shutdown();
         }
+    }
 
-        // Слияние серий
-        Stack<Run> stack = new Stack<>();
-        for (int i = 0; i < n; ) {
-            int runLen = countRun(arr, i);
-            stack.push(new Run(i, runLen));
-            i += runLen;
-            mergeCollapse(arr, stack);
+    public static void sort(long[] arr) {
+        if (arr == null || arr.length < 2) return;
+        LongTimsort.sort(arr, 0, arr.length);
+    }
+
+    // Порядок как у Double.compare: -0.0 перед 0.0, NaN в конце
+    public static void sort(double[] arr) {
+        if (arr == null || arr.length < 2) return;
+        DoubleTimsort.sort(arr, 0, arr.length);
+    }
+
+    // Устойчивая сортировка объектов
+    public static <T> void sort(T[] arr, Comparator<? super T> c) {
+        Objects.requireNonNull(c, "comparator");
+        if (arr == null || arr.length < 2) return;
+        ComparatorTimsort.sort(arr, 0, arr.length, c);
+    }
+
+    // Перестановка индексов, упорядочивающая keys (устойчиво): keys[result[0]] <= keys[result[1]] <= ...
+    // Ключ и индекс упаковываются в один long, так что сортируется long[] без боксинга.
+    public static int[] sortedIndex(int[] keys) {
+        int n = keys.length;
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            packed[i] = ((long) keys[i] << 32) | i;
         }
+        LongTimsort.sort(packed, 0, n);
 
-        // Финализация слияния
-        while (stack.size() > 1) {
-            Run run2 = stack.pop();
-            Run run1 = stack.pop();
-            merge(arr, run1.start, run2.start, run2.start + run2.length);
-            stack.push(new Run(run1.start, run1.length + run2.length));
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++) {
+            index[i] = (int) packed[i];
         }
+        return index;
     }
-    // нахождение минимальной серии
-    private static int minRunLength(int n) {
-        int r = 0;
-        while (n >= MIN_MERGE) {
-            r |= (n & 1);
-            n >>= 1;
-            iterations++;
+
+    // То же для объектов: ключ извлекается один раз на элемент
+    public static <T> int[] sortedIndex(T[] items, ToIntFunction<? super T> key) {
+        int[] keys = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            keys[i] = key.applyAsInt(items[i]);
         }
-        return n + r;
+        return sortedIndex(keys);
     }
 
-    private static int countRun(int[] arr, int start) {
-        int n = arr.length;
-        if (start >= n - 1) return 1;
+    static void sort(int[] arr, int lo, int hi, SortStats stats) {
+        sort(arr, lo, hi, SortStrategy.AUTO, stats);
+    }
 
-        int i = start;
-        boolean ascending = arr[i] <= arr[i + 1];
+    static void sort(int[] arr, int lo, int hi, SortStrategy strategy, SortStats stats) {
+        int n = hi - lo;
+        if (n < 2) return;
+
+        int min = 0;
+        int max = 0;
+        if (strategy != SortStrategy.TIMSORT) {
+            // Один проход: диапазон значений и число нарушений порядка в обе стороны
+            min = arr[lo];
+            max = arr[lo];
+            int descents = 0;
+            int ascents = 0;
+            for (int i = lo + 1; i < hi; i++) {
+                int v = arr[i];
+                if (v < min) min = v;
+                if (v > max) max = v;
+                if (v < arr[i - 1]) descents++;
+                else if (v > arr[i - 1]) ascents++;
+            }
+            if (strategy == SortStrategy.AUTO) {
+                strategy = chooseStrategy(n, (long) max - min + 1, Math.min(descents, ascents));
+            }
+        }
+        if (stats != null) stats.strategy = strategy;
 
-        while (i < n - 1) {
-            iterations++;
-            if ((ascending && arr[i] > arr[i + 1]) || (!ascending && arr[i] < arr[i + 1])) {
+        switch (strategy) {
+            case COUNTING:
+                countingSort(arr, lo, hi, min, max, stats);
+                break;
+            case RADIX:
+                radixSort(arr, lo, hi, min, max, stats);
                 break;
+            default:
+                timsort(arr, lo, hi, stats);
+        }
+    }
+
+    private static SortStrategy chooseStrategy(int n, long range, int disorder) {
+        if (n < AUTO_MIN_LENGTH || disorder <= n / PRESORTED_RATIO) {
+            return SortStrategy.TIMSORT; // Timsort на почти упорядоченном входе близок к O(n)
+        }
+        if (range <= (long) n * COUNTING_RANGE_FACTOR && range <= MAX_COUNTING_RANGE) {
+            return SortStrategy.COUNTING;
+        }
+        // Поразрядная сортировка выгодна, пока проходов заметно меньше log2(n)
+        int bits = 64 - Long.numberOfLeadingZeros(range - 1);
+        int passes = (bits + RADIX_BITS - 1) / RADIX_BITS;
+        int log2n = 31 - Integer.numberOfLeadingZeros(n);
+        return passes <= log2n / 4 ? SortStrategy.RADIX : SortStrategy.TIMSORT;
+    }
+
+    // Сортировка подсчётом: таблица на max - min + 1 счётчиков
+    private static void countingSort(int[] arr, int lo, int hi, int min, int max, SortStats stats) {
+        long range = (long) max - min + 1;
+        if (range > MAX_COUNTING_RANGE) {
+            throw new IllegalArgumentException("Диапазон значений слишком велик для подсчёта: " + range);
+        }
+        int[] counts = new int[(int) range];
+        for (int i = lo; i < hi; i++) {
+            counts[arr[i] - min]++;
+        }
+        int k = lo;
+        for (int v = 0; v < counts.length; v++) {
+            for (int c = counts[v]; c > 0; c--) {
+                arr[k++] = v + min;
+            }
+        }
+        if (stats != null) {
+            stats.moves += hi - lo;
+            stats.scratchBytes += range * Integer.BYTES;
+        }
+    }
+
+    // LSD-поразрядная сортировка по байтам ключа arr[i] - min (как беззнакового).
+    // Гистограммы всех разрядов строятся за один проход, разряды с одним значением пропускаются.
+    private static void radixSort(int[] arr, int lo, int hi, int min, int max, SortStats stats) {
+        int n = hi - lo;
+        int bits = 32 - Integer.numberOfLeadingZeros(max - min);
+        int passes = (bits + RADIX_BITS - 1) / RADIX_BITS;
+        int buckets = 1 << RADIX_BITS;
+        int mask = buckets - 1;
+
+        int[][] counts = new int[passes][buckets];
+        for (int i = lo; i < hi; i++) {
+            int key = arr[i] - min;
+            for (int p = 0; p < passes; p++) {
+                counts[p][(key >>> (p * RADIX_BITS)) & mask]++;
+            }
+        }
+
+        int[] src = arr;
+        int srcBase = lo;
+        int[] dst = new int[n];
+        int dstBase = 0;
+        for (int p = 0; p < passes; p++) {
+            int[] count = counts[p];
+            int shift = p * RADIX_BITS;
+            if (count[(src[srcBase] - min) >>> shift & mask] == n) continue; // весь разряд одинаковый
+
+            int sum = dstBase;
+            for (int b = 0; b < buckets; b++) {
+                int c = count[b];
+                count[b] = sum;
+                sum += c;
+            }
+            for (int i = srcBase, end = srcBase + n; i < end; i++) {
+                int v = src[i];
+                dst[count[((v - min) >>> shift) & mask]++] = v;
             }
-            i++;
+            if (stats != null) stats.moves += n;
+
+            int[] t = src;
+            src = dst;
+            dst = t;
+            int tb = srcBase;
+            srcBase = dstBase;
+            dstBase = tb;
         }
+        if (src != arr) {
+            System.arraycopy(src, srcBase, arr, lo, n);
+            if (stats != null) stats.moves += n;
+        }
+        if (stats != null) stats.scratchBytes += (long) n * Integer.BYTES + (long) passes * buckets * Integer.BYTES;
+    }
+
+    // Сортировка участка arr[lo, hi)
+    private static void timsort(int[] arr, int lo, int hi, SortStats stats) {
+        if (hi - lo < 2) return;
+        new MergeState(arr, hi - lo, stats).sort(lo, hi);
+    }
 
-        if (!ascending) {
-            reverse(arr, start, i);
+    // Длина серии, начинающейся в lo. Строго убывающая серия разворачивается
+    // (нестрогую развернуть нельзя - сломается устойчивость).
+    private static int countRunAndMakeAscending(int[] arr, int lo, int hi, SortStats stats) {
+        int runHi = lo + 1;
+        if (runHi == hi) {
+            if (stats != null) stats.runs++;
+            return 1;
+        }
+
+        if (arr[runHi++] < arr[lo]) {
+            while (runHi < hi && arr[runHi] < arr[runHi - 1]) {
+                runHi++;
+            }
+            reverse(arr, lo, runHi - 1, stats);
+        } else {
+            while (runHi < hi && arr[runHi] >= arr[runHi - 1]) {
+                runHi++;
+            }
         }
 
-        return i - start + 1;
+        // Каждый шаг серии - одно сравнение, плюс последнее, прервавшее её
+        if (stats != null) {
+            stats.runs++;
+            stats.comparisons += runHi - lo - (runHi < hi ? 0 : 1);
+        }
+        return runHi - lo;
     }
 
-    private static void reverse(int[] arr, int start, int end) {
+    private static void reverse(int[] arr, int start, int end, SortStats stats) {
+        if (stats != null) stats.moves += (end - start + 1) & ~1;
         while (start < end) {
             int temp = arr[start];
             arr[start] = arr[end];
             arr[end] = temp;
             start++;
             end--;
-            iterations++;
         }
     }
 
-    private static void insertionSort(int[] arr, int left, int right) {
-        for (int i = left + 1; i < right; i++) {
-            int key = arr[i];
-            int j = i - 1;
-            while (j >= left && arr[j] > key) {
-                arr[j + 1] = arr[j];
-                j--;
-                iterations++;
+    // Сортировка вставками arr[lo, hi), где arr[lo, start) уже отсортирован.
+    // Место вставки ищется бинарным поиском, сдвиг - одним arraycopy.
+    private static void binaryInsertionSort(int[] arr, int lo, int hi, int start, SortStats stats) {
+        if (start == lo) start++;
+        for (; start < hi; start++) {
+            int pivot = arr[start];
+            int left = lo;
+            int right = start;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (pivot < arr[mid]) {
+                    right = mid;
+                } else {
+                    left = mid + 1;
+                }
+                if (stats != null) stats.comparisons++;
             }
-            arr[j + 1] = key;
-            iterations++;
+
+            int count = start - left;
+            System.arraycopy(arr, left, arr, left + 1, count);
+            arr[left] = pivot;
+            if (stats != null) stats.moves += count + 1;
         }
     }
 
-    private static void merge(int[] arr, int left, int mid, int right) {
+    // Слияние соседних серий [left, mid) и [mid, right) с галопом.
+    // Во временный буфер копируется только меньшая из двух серий.
+    private static void merge(int[] arr, int left, int mid, int right, MergeState ms) {
         if (mid >= right) return; // Нечего сливать
-        right = Math.min(right, arr.length); // Защита от выхода за границы
+        SortStats stats = ms.stats;
+
+        // Элементы левой серии, не большие arr[mid], уже стоят на своих местах
+        int k = gallopRight(arr[mid], arr, left, mid - left, 0, stats);
+        left += k;
+        if (left == mid) return;
+
+        // Элементы правой серии, не меньшие arr[mid - 1], тоже на месте
+        int len2 = gallopLeft(arr[mid - 1], arr, mid, right - mid, right - mid - 1, stats);
+        if (len2 == 0) return;
+
+        int len1 = mid - left;
+        // Каждый элемент записывается в массив ровно один раз, плюс копия меньшей серии в буфер
+        if (stats != null) stats.moves += len1 + len2 + Math.min(len1, len2);
+        if (len1 <= len2) {
+            mergeLo(arr, left, len1, mid, len2, ms);
+        } else {
+            mergeHi(arr, left, len1, mid, len2, ms);
+        }
+    }
 
-        int[] leftArr = Arrays.copyOfRange(arr, left, mid);
-        int[] rightArr = Arrays.copyOfRange(arr, mid, right);
+    // Левая серия меньше: копируем её в буфер и заполняем массив слева направо
+    private static void mergeLo(int[] arr, int base1, int len1, int base2, int len2, MergeState ms) {
+        int[] tmp = ms.ensureCapacity(len1);
+        System.arraycopy(arr, base1, tmp, 0, len1);
+        SortStats stats = ms.stats;
 
-        int i = 0, j = 0, k = left;
-        while (i < leftArr.length && j < rightArr.length) {
-            if (leftArr[i] <= rightArr[j]) {
-                arr[k++] = leftArr[i++];
-            } else {
-                arr[k++] = rightArr[j++];
-            }
-            iterations++;
+        int cursor1 = 0;
+        int cursor2 = base2;
+        int dest = base1;
+
+        arr[dest++] = arr[cursor2++];
+        if (--len2 == 0) {
+            System.arraycopy(tmp, cursor1, arr, dest, len1);
+            return;
+        }
+        if (len1 == 1) {
+            System.arraycopy(arr, cursor2, arr, dest, len2);
+            arr[dest + len2] = tmp[cursor1];
+            return;
         }
 
-        while (i < leftArr.length) {
-            arr[k++] = leftArr[i++];
-            iterations++;
+        int minGallop = ms.minGallop;
+        outer:
+        while (true) {
+            int count1 = 0; // сколько раз подряд выиграла левая серия
+            int count2 = 0; // сколько раз подряд выиграла правая серия
+
+            // Обычное поэлементное слияние, пока ни одна серия не побеждает подряд
+            do {
+                if (stats != null) stats.comparisons++;
+                if (arr[cursor2] < tmp[cursor1]) {
+                    arr[dest++] = arr[cursor2++];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 0) break outer;
+                } else {
+                    arr[dest++] = tmp[cursor1++];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 1) break outer;
+                }
+            } while ((count1 | count2) < minGallop);
+            if (stats != null) stats.gallopSwitches++;
+
+            // Режим галопа: ищем длину выигрышного участка экспоненциальным поиском
+            do {
+                count1 = gallopRight(arr[cursor2], tmp, cursor1, len1, 0, stats);
+                if (count1 != 0) {
+                    System.arraycopy(tmp, cursor1, arr, dest, count1);
+                    dest += count1;
+                    cursor1 += count1;
+                    len1 -= count1;
+                    if (len1 <= 1) break outer;
+                }
+                arr[dest++] = arr[cursor2++];
+                if (--len2 == 0) break outer;
+
+                count2 = gallopLeft(tmp[cursor1], arr, cursor2, len2, 0, stats);
+                if (count2 != 0) {
+                    System.arraycopy(arr, cursor2, arr, dest, count2);
+                    dest += count2;
+                    cursor2 += count2;
+                    len2 -= count2;
+                    if (len2 == 0) break outer;
+                }
+                arr[dest++] = tmp[cursor1++];
+                if (--len1 == 1) break outer;
+                minGallop--;
+            } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+            minGallop = RunMerger.afterGallop(minGallop);
         }
-        while (j < rightArr.length) {
-            arr[k++] = rightArr[j++];
-            iterations++;
+        ms.storeMinGallop(minGallop);
+
+        if (len1 == 1) {
+            System.arraycopy(arr, cursor2, arr, dest, len2);
+            arr[dest + len2] = tmp[cursor1];
+        } else if (len1 > 0) {
+            System.arraycopy(tmp, cursor1, arr, dest, len1);
         }
     }
 
-    private static void mergeCollapse(int[] arr, Stack<Run> stack) {
-        while (stack.size() > 1) {
-            Run run1 = stack.pop();
-            Run run2 = stack.pop();
+    // Правая серия меньше: копируем её в буфер и заполняем массив справа налево
+    private static void mergeHi(int[] arr, int base1, int len1, int base2, int len2, MergeState ms) {
+        int[] tmp = ms.ensureCapacity(len2);
+        System.arraycopy(arr, base2, tmp, 0, len2);
+        SortStats stats = ms.stats;
 
-            if (run2.start + run2.length != run1.start) {
-                stack.push(run2);
-                stack.push(run1);
-                break;
+        int cursor1 = base1 + len1 - 1;
+        int cursor2 = len2 - 1;
+        int dest = base2 + len2 - 1;
+
+        arr[dest--] = arr[cursor1--];
+        if (--len1 == 0) {
+            System.arraycopy(tmp, 0, arr, dest - (len2 - 1), len2);
+            return;
+        }
+        if (len2 == 1) {
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(arr, cursor1 + 1, arr, dest + 1, len1);
+            arr[dest] = tmp[cursor2];
+            return;
+        }
+
+        int minGallop = ms.minGallop;
+        outer:
+        while (true) {
+            int count1 = 0;
+            int count2 = 0;
+
+            do {
+                if (stats != null) stats.comparisons++;
+                if (tmp[cursor2] < arr[cursor1]) {
+                    arr[dest--] = arr[cursor1--];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 0) break outer;
+                } else {
+                    arr[dest--] = tmp[cursor2--];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 1) break outer;
+                }
+            } while ((count1 | count2) < minGallop);
+            if (stats != null) stats.gallopSwitches++;
+
+            do {
+                count1 = len1 - gallopRight(tmp[cursor2], arr, base1, len1, len1 - 1, stats);
+                if (count1 != 0) {
+                    dest -= count1;
+                    cursor1 -= count1;
+                    len1 -= count1;
+                    System.arraycopy(arr, cursor1 + 1, arr, dest + 1, count1);
+                    if (len1 == 0) break outer;
+                }
+                arr[dest--] = tmp[cursor2--];
+                if (--len2 == 1) break outer;
+
+                count2 = len2 - gallopLeft(arr[cursor1], tmp, 0, len2, len2 - 1, stats);
+                if (count2 != 0) {
+                    dest -= count2;
+                    cursor2 -= count2;
+                    len2 -= count2;
+                    System.arraycopy(tmp, cursor2 + 1, arr, dest + 1, count2);
+                    if (len2 <= 1) break outer;
+                }
+                arr[dest--] = arr[cursor1--];
+                if (--len1 == 0) break outer;
+                minGallop--;
+            } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+            minGallop = RunMerger.afterGallop(minGallop);
+        }
+        ms.storeMinGallop(minGallop);
+
+        if (len2 == 1) {
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(arr, cursor1 + 1, arr, dest + 1, len1);
+            arr[dest] = tmp[cursor2];
+        } else if (len2 > 0) {
+            System.arraycopy(tmp, 0, arr, dest - (len2 - 1), len2);
+        }
+    }
+
+    // Позиция вставки key в отсортированный участок a[base, base + len):
+    // левее всех равных ему элементов. Поиск начинается с a[base + hint].
+    private static int gallopLeft(int key, int[] a, int base, int len, int hint, SortStats stats) {
+        int lastOfs = 0;
+        int ofs = 1;
+        if (stats != null) stats.comparisons++;
+        if (key > a[base + hint]) {
+            // Галоп вправо
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && key > a[base + hint + ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs; // переполнение
+                if (stats != null) stats.comparisons++;
             }
+            if (stats != null && ofs < maxOfs) stats.comparisons++;
+            if (ofs > maxOfs) ofs = maxOfs;
+            lastOfs += hint;
+            ofs += hint;
+        } else {
+            // Галоп влево
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && key <= a[base + hint - ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+                if (stats != null) stats.comparisons++;
+            }
+            if (stats != null && ofs < maxOfs) stats.comparisons++;
+            if (ofs > maxOfs) ofs = maxOfs;
+            int tmp = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - tmp;
+        }
 
-            merge(arr, run2.start, run1.start, run1.start + run1.length);
-            stack.push(new Run(run2.start, run2.length + run1.length));
+        // Бинарный поиск внутри найденного интервала (lastOfs, ofs]
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int m = lastOfs + ((ofs - lastOfs) >>> 1);
+            if (key > a[base + m]) {
+                lastOfs = m + 1;
+            } else {
+                ofs = m;
+            }
+            if (stats != null) stats.comparisons++;
         }
+        return ofs;
     }
 
-    private static class Run {
-        int start;
-        int length;
+    // То же, что gallopLeft, но позиция правее всех равных key элементов
+    private static int gallopRight(int key, int[] a, int base, int len, int hint, SortStats stats) {
+        int lastOfs = 0;
+        int ofs = 1;
+        if (stats != null) stats.comparisons++;
+        if (key < a[base + hint]) {
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && key < a[base + hint - ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+                if (stats != null) stats.comparisons++;
+            }
+            if (stats != null && ofs < maxOfs) stats.comparisons++;
+            if (ofs > maxOfs) ofs = maxOfs;
+            int tmp = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - tmp;
+        } else {
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && key >= a[base + hint + ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+                if (stats != null) stats.comparisons++;
+            }
+            if (stats != null && ofs < maxOfs) stats.comparisons++;
+            if (ofs > maxOfs) ofs = maxOfs;
+            lastOfs += hint;
+            ofs += hint;
+        }
 
-        Run(int start, int length) {
-            this.start = start;
-            this.length = length;
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int m = lastOfs + ((ofs - lastOfs) >>> 1);
+            if (key < a[base + m]) {
+                ofs = m;
+            } else {
+                lastOfs = m + 1;
+            }
+            if (stats != null) stats.comparisons++;
         }
+        return ofs;
     }
 
-    private static void generateTestData(String filename, int numArrays, int minSize, int maxSize) throws IOException {
-        Random random = new Random();
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            for (int i = 0; i < numArrays; i++) {
-                int size = minSize + random.nextInt(maxSize - minSize + 1);
-                writer.print(size + ":");
-                for (int j = 0; j < size; j++) {
-                    writer.print(random.nextInt(10000) + (j < size - 1 ? "," : ""));
+    // Сортирует a[lo, hi); результат остаётся в a (toA) или в буфере w
+    @SuppressWarnings("serial")
+    private static class ParallelSorter extends RecursiveAction {
+        final int[] a;
+        final int[] w;
+        final int lo;
+        final int hi;
+        final boolean toA;
+        final int gran;
+        final SortStats stats;
+
+        ParallelSorter(int[] a, int[] w, int lo, int hi, boolean toA, int gran, SortStats stats) {
+            this.a = a;
+            this.w = w;
+            this.lo = lo;
+            this.hi = hi;
+            this.toA = toA;
+            this.gran = gran;
+            this.stats = stats;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= gran) {
+                // Участки считают в свою статистику и складывают её в общую один раз
+                SortStats local = stats == null ? null : new SortStats();
+                sort(a, lo, hi, local);
+                if (!toA) System.arraycopy(a, lo, w, lo, hi - lo);
+                if (local != null) {
+                    if (!toA) local.moves += hi - lo;
+                    stats.add(local);
                 }
-                writer.println();
+                return;
             }
+
+            // Половины сортируются в противоположный массив и сливаются в целевой
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new ParallelSorter(a, w, lo, mid, !toA, gran, stats),
+                    new ParallelSorter(a, w, mid, hi, !toA, gran, stats));
+            int[] src = toA ? w : a;
+            int[] dst = toA ? a : w;
+            new ParallelMerger(src, dst, lo, mid, mid, hi, lo, gran, stats).compute();
         }
     }
 
-    private static List<int[]> readTestData(String filename) throws IOException {
-        List<int[]> arrays = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(":");
-                int size = Integer.parseInt(parts[0]);
-                String[] elements = parts[1].split(",");
-                int[] arr = new int[size];
-                for (int i = 0; i < size; i++) {
-                    arr[i] = Integer.parseInt(elements[i]);
+    // Устойчивое слияние src[lo1, hi1) и src[lo2, hi2) в dst начиная с dstLo.
+    // Большая серия делится пополам, точка деления другой ищется бинарным поиском.
+    @SuppressWarnings("serial")
+    private static class ParallelMerger extends RecursiveAction {
+        final int[] src;
+        final int[] dst;
+        final int lo1;
+        final int hi1;
+        final int lo2;
+        final int hi2;
+        final int dstLo;
+        final int gran;
+        final SortStats stats;
+
+        ParallelMerger(int[] src, int[] dst, int lo1, int hi1, int lo2, int hi2, int dstLo, int gran,
+                       SortStats stats) {
+            this.src = src;
+            this.dst = dst;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dstLo = dstLo;
+            this.gran = gran;
+            this.stats = stats;
+        }
+
+        @Override
+        protected void compute() {
+            int len1 = hi1 - lo1;
+            int len2 = hi2 - lo2;
+            int split1 = lo1;
+            int split2 = lo2;
+            boolean sequential = len1 + len2 <= gran || len1 == 0 || len2 == 0;
+            if (!sequential) {
+                if (len1 >= len2) {
+                    // Элементы правой серии, равные ключу, должны уйти во вторую половину
+                    split1 = (lo1 + hi1) >>> 1;
+                    split2 = lowerBound(src, lo2, hi2, src[split1]);
+                } else {
+                    // Элементы левой серии, равные ключу, должны остаться в первой половине
+                    split2 = (lo2 + hi2) >>> 1;
+                    split1 = upperBound(src, lo1, hi1, src[split2]);
+                }
+                // Деление, оставившее одну из половин пустой, не уменьшает задачу
+                // (при gran == 1 так бывает уже на двух элементах) - сливаем здесь
+                int firstLen = (split1 - lo1) + (split2 - lo2);
+                sequential = firstLen == 0 || firstLen == len1 + len2;
+            }
+            if (sequential) {
+                long comparisons = mergeInto(src, dst, lo1, hi1, lo2, hi2, dstLo);
+                if (stats != null) {
+                    SortStats local = new SortStats();
+                    local.comparisons = comparisons;
+                    local.moves = len1 + len2;
+                    local.merges = 1;
+                    stats.add(local);
                 }
-                arrays.add(arr);
+                return;
+            }
+
+            int dstMid = dstLo + (split1 - lo1) + (split2 - lo2);
+            invokeAll(new ParallelMerger(src, dst, lo1, split1, lo2, split2, dstLo, gran, stats),
+                    new ParallelMerger(src, dst, split1, hi1, split2, hi2, dstMid, gran, stats));
+        }
+    }
+
+    // Возвращает число сравнений: по одному на каждый элемент, записанный в цикле
+    private static long mergeInto(int[] src, int[] dst, int lo1, int hi1, int lo2, int hi2, int k) {
+        int start = k;
+        while (lo1 < hi1 && lo2 < hi2) {
+            if (src[lo2] < src[lo1]) {
+                dst[k++] = src[lo2++];
+            } else {
+                dst[k++] = src[lo1++];
+            }
+        }
+        long comparisons = k - start;
+        System.arraycopy(src, lo1, dst, k, hi1 - lo1);
+        System.arraycopy(src, lo2, dst, k + hi1 - lo1, hi2 - lo2);
+        return comparisons;
+    }
+
+    // Первый индекс в a[lo, hi), где a[i] >= key
+    private static int lowerBound(int[] a, int lo, int hi, int key) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Первый индекс в a[lo, hi), где a[i] > key
+    private static int upperBound(int[] a, int lo, int hi, int key) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Состояние слияний одной сортировки: массив, статистика и временный буфер;
+    // проход по сериям и порог галопа - в RunMerger
+    private static final class MergeState extends RunMerger {
+        final int[] arr;
+        final SortStats stats;
+        int[] tmp;
+
+        MergeState(int[] arr, int n, SortStats stats) {
+            super(n);
+            this.arr = arr;
+            this.stats = stats;
+        }
+
+        @Override
+        int countRunAndMakeAscending(int lo, int hi) {
+            return Timsort.countRunAndMakeAscending(arr, lo, hi, stats);
+        }
+
+        @Override
+        void binaryInsertionSort(int lo, int hi, int start) {
+            Timsort.binaryInsertionSort(arr, lo, hi, start, stats);
+        }
+
+        @Override
+        void merge(int left, int mid, int right) {
+            if (stats != null) stats.merges++;
+            Timsort.merge(arr, left, mid, right, this);
+        }
+
+        int[] ensureCapacity(int minCapacity) {
+            if (tmp == null || tmp.length < minCapacity) {
+                tmp = new int[tmpLength(minCapacity)];
+                if (stats != null) stats.scratchBytes += (long) tmp.length * Integer.BYTES;
             }
+            return tmp;
         }
-        return arrays;
     }
 
     public static void main(String[] args) throws IOException {
-        String filename = "test_data.txt";
+        Path filename = Paths.get("test_data.txt");
         int numArrays = 100; // 50-100 массивов
         int minSize = 100;
         int maxSize = 10000;
 
         // Генерация данных
-        generateTestData(filename, numArrays, minSize, maxSize);
+        TestData.generateText(filename, numArrays, minSize, maxSize, new Random());
 
         // Чтение данных
-        List<int[]> testArrays = readTestData(filename);
+        List<int[]> testArrays = TestData.readText(filename);
 
         // Сортировка результатов по размеру массивов
         testArrays.sort(Comparator.comparingInt(a -> a.length));
 
         // Замер времени и вывод
-        System.out.println("Размер | Время (мс) | Итерации");
-        System.out.println("-----------------------------");
+        System.out.println("Размер | Время (мс) | Сравнения | Перемещения");
+        System.out.println("---------------------------------------------");
+        SortStats stats = new SortStats();
         for (int[] arr : testArrays) {
+            stats.reset();
             long startTime = System.nanoTime();
-            sort(arr);
+            sort(arr, stats);
             long endTime = System.nanoTime();
             long durationMs = TimeUnit.NANOSECONDS.toMillis(endTime - startTime);
 
-            System.out.printf("%5d | %9d | %9d%n",
-                    arr.length, durationMs, iterations);
+            System.out.printf("%5d | %9d | %9d | %11d%n",
+                    arr.length, durationMs, stats.getComparisons(), stats.getMoves());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,271 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Consumer;
+
+// Набор бенчмарков Timsort по размерам и распределениям входных данных.
+// Методика как у JMH: прогрев, серия измерений, свежая копия входа на каждый вызов
+// (копирование не входит во время), результат "съедается" контрольной суммой,
+// аллокации и сборки мусора снимаются через MXBean-ы.
+//
+// Запуск: java TimsortBenchmark [--min-exp 2] [--max-exp 6] [--warmup 5] [--iterations 10]
+//                              [--swaps 10] [--label current] [--out timsort_bench.csv]
+// Для --max-exp 8 нужна куча порядка -Xmx4g.
+public class TimsortBenchmark {
+
+    // Минимальная длительность одного измерения: мелкие сортировки гоняются пачкой
+    private static final long TARGET_BATCH_NANOS = 10_000_000L;
+    // Ограничение на суммарный размер заранее подготовленных копий входа
+    private static final long MAX_BATCH_ELEMENTS = 1L << 24;
+
+    enum Algorithm {
+        TIMSORT(Timsort::sort),
+        TIMSORT_NO_AUTO(a -> Timsort.sort(a, SortStrategy.TIMSORT, null)),
+        ARRAYS_SORT(Arrays::sort),
+        ARRAYS_PARALLEL_SORT(Arrays::parallelSort);
+
+        final Consumer<int[]> sorter;
+
+        Algorithm(Consumer<int[]> sorter) {
+            this.sorter = sorter;
+        }
+    }
+
+    enum Distribution {
+        RANDOM,
+        SORTED,
+        REVERSED,
+        SAWTOOTH,
+        FEW_UNIQUE,
+        ORGAN_PIPE,
+        SORTED_K_SWAPS;
+
+        int[] generate(int n, int swaps, Random random) {
+            int[] a = new int[n];
+            switch (this) {
+                case RANDOM:
+                    for (int i = 0; i < n; i++) a[i] = random.nextInt();
+                    break;
+                case SORTED:
+                    for (int i = 0; i < n; i++) a[i] = i;
+                    break;
+                case REVERSED:
+                    for (int i = 0; i < n; i++) a[i] = n - i;
+                    break;
+                case SAWTOOTH:
+                    // Зубья длиной ~sqrt(n)
+                    int tooth = Math.max(2, (int) Math.sqrt(n));
+                    for (int i = 0; i < n; i++) a[i] = i % tooth;
+                    break;
+                case FEW_UNIQUE:
+                    for (int i = 0; i < n; i++) a[i] = random.nextInt(16);
+                    break;
+                case ORGAN_PIPE:
+                    for (int i = 0; i < n; i++) a[i] = i < n / 2 ? i : n - i;
+                    break;
+                case SORTED_K_SWAPS:
+                    for (int i = 0; i < n; i++) a[i] = i;
+                    for (int k = 0; k < swaps; k++) {
+                        int i = random.nextInt(n);
+                        int j = random.nextInt(n);
+                        int t = a[i];
+                        a[i] = a[j];
+                        a[j] = t;
+                    }
+                    break;
+            }
+            return a;
+        }
+    }
+
+    private static final class Result {
+        int opsPerIteration;
+        double avgNanosPerOp;
+        double minNanosPerOp;
+        double maxNanosPerOp;
+        double stdevNanosPerOp;
+        double allocBytesPerOp;
+        long gcCount;
+        long gcTimeMs;
+    }
+
+    private static long blackhole;
+
+    public static void main(String[] args) throws IOException {
+        int minExp = 2;
+        int maxExp = 6;
+        int warmup = 5;
+        int iterations = 10;
+        int swaps = 10;
+        String label = "current";
+        String out = "timsort_bench.csv";
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--min-exp": minExp = Integer.parseInt(args[++i]); break;
+                case "--max-exp": maxExp = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--swaps": swaps = Integer.parseInt(args[++i]); break;
+                case "--label": label = args[++i]; break;
+                case "--out": out = args[++i]; break;
+                default: throw new IllegalArgumentException("Неизвестный аргумент: " + args[i]);
+            }
+        }
+
+        Path outPath = Paths.get(out);
+        boolean newFile = !Files.exists(outPath) || Files.size(outPath) == 0;
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(outPath,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            // Файл дописывается, чтобы прогоны разных версий (label) лежали рядом
+            if (newFile) {
+                csv.println("label,timestamp,algorithm,distribution,size,ops_per_iteration,"
+                        + "avg_ns_per_op,min_ns_per_op,max_ns_per_op,stdev_ns_per_op,"
+                        + "alloc_bytes_per_op,gc_count,gc_time_ms");
+            }
+
+            String timestamp = LocalDateTime.now().toString();
+            System.out.println("Алгоритм             | Распределение  |      Размер |   Среднее (нс/оп) |  Аллокации (Б/оп) | GC");
+            System.out.println("-----------------------------------------------------------------------------------------------");
+            Random random = new Random(42);
+            for (int exp = minExp; exp <= maxExp; exp++) {
+                int n = (int) Math.pow(10, exp);
+                for (Distribution distribution : Distribution.values()) {
+                    int[] input = distribution.generate(n, swaps, random);
+                    for (Algorithm algorithm : Algorithm.values()) {
+                        Result r = measure(algorithm, input, warmup, iterations);
+                        System.out.printf(Locale.ROOT, "%-20s | %-14s | %11d | %17.1f | %17.1f | %d (%d мс)%n",
+                                algorithm, distribution, n, r.avgNanosPerOp, r.allocBytesPerOp,
+                                r.gcCount, r.gcTimeMs);
+                        csv.printf(Locale.ROOT, "%s,%s,%s,%s,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%d,%d%n",
+                                label, timestamp, algorithm, distribution, n, r.opsPerIteration,
+                                r.avgNanosPerOp, r.minNanosPerOp, r.maxNanosPerOp, r.stdevNanosPerOp,
+                                r.allocBytesPerOp, r.gcCount, r.gcTimeMs);
+                        csv.flush();
+                    }
+                }
+            }
+        }
+        // Не даём JIT выбросить сортировки как мёртвый код
+        if (blackhole == 42) System.out.println();
+    }
+
+    private static Result measure(Algorithm algorithm, int[] input, int warmup, int iterations) {
+        int n = input.length;
+        int batch = calibrateBatch(algorithm, input);
+        int[][] copies = new int[batch][];
+        for (int i = 0; i < batch; i++) {
+            copies[i] = new int[n];
+        }
+
+        for (int i = 0; i < warmup; i++) {
+            runBatch(algorithm, input, copies);
+        }
+
+        com.sun.management.ThreadMXBean threads = threadBean();
+        long threadId = Thread.currentThread().getId();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long allocBytes = 0;
+
+        double[] perOp = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long allocBefore = threads != null ? threads.getThreadAllocatedBytes(threadId) : 0;
+            perOp[i] = (double) runBatch(algorithm, input, copies) / batch;
+            if (threads != null) allocBytes += threads.getThreadAllocatedBytes(threadId) - allocBefore;
+        }
+
+        Result r = new Result();
+        r.opsPerIteration = batch;
+        double sum = 0;
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        for (double t : perOp) {
+            sum += t;
+            min = Math.min(min, t);
+            max = Math.max(max, t);
+        }
+        r.avgNanosPerOp = sum / iterations;
+        r.minNanosPerOp = min;
+        r.maxNanosPerOp = max;
+        double sq = 0;
+        for (double t : perOp) {
+            sq += (t - r.avgNanosPerOp) * (t - r.avgNanosPerOp);
+        }
+        r.stdevNanosPerOp = iterations > 1 ? Math.sqrt(sq / (iterations - 1)) : 0;
+        // Аллокации считаются только в текущем потоке: у parallelSort часть уходит в пул
+        r.allocBytesPerOp = (double) allocBytes / ((long) iterations * batch);
+        r.gcCount = gcCount() - gcCountBefore;
+        r.gcTimeMs = gcTime() - gcTimeBefore;
+        return r;
+    }
+
+    // Подбирает число вызовов в одном измерении так, чтобы оно длилось не меньше TARGET_BATCH_NANOS.
+    // Берётся лучшее из нескольких пробных вызовов, чтобы холодный первый не раздул оценку.
+    private static int calibrateBatch(Algorithm algorithm, int[] input) {
+        int[] copy = new int[input.length];
+        long single = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.arraycopy(input, 0, copy, 0, input.length);
+            long start = System.nanoTime();
+            algorithm.sorter.accept(copy);
+            single = Math.min(single, Math.max(1, System.nanoTime() - start));
+        }
+        long byTime = TARGET_BATCH_NANOS / single + 1;
+        long byMemory = Math.max(1, MAX_BATCH_ELEMENTS / Math.max(1, input.length));
+        return (int) Math.min(byTime, byMemory);
+    }
+
+    // Копии готовятся до замера, время считается только для сортировок
+    private static long runBatch(Algorithm algorithm, int[] input, int[][] copies) {
+        for (int[] copy : copies) {
+            System.arraycopy(input, 0, copy, 0, input.length);
+        }
+        long start = System.nanoTime();
+        for (int[] copy : copies) {
+            algorithm.sorter.accept(copy);
+        }
+        long elapsed = System.nanoTime() - start;
+        for (int[] copy : copies) {
+            blackhole += copy[copy.length >>> 1];
+        }
+        return elapsed;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+}